@@ -9,6 +9,7 @@ plugins {
     alias(libs.plugins.changelog) // Gradle Changelog Plugin
     alias(libs.plugins.qodana) // Gradle Qodana Plugin
     alias(libs.plugins.kover) // Gradle Kover Plugin
+    alias(libs.plugins.jmh) // JMH 基准（src/jmh，手动运行 ./gradlew jmh）
 }
 
 group = providers.gradleProperty("pluginGroup").get()
@@ -47,6 +48,10 @@ dependencies {
     testImplementation(libs.junit)
     testImplementation(libs.opentest4j)
 
+    // 平台自带的 JNA 不在 jmh 类路径上，基准单独声明
+    jmh(libs.jna)
+    jmh(libs.jnaPlatform)
+
     // IntelliJ Platform Gradle Plugin Dependencies Extension - read more: https://plugins.jetbrains.com/docs/intellij/tools-intellij-platform-gradle-plugin-dependencies-extension.html
     intellijPlatform {
         create(providers.gradleProperty("platformType"), providers.gradleProperty("platformVersion"))
@@ -128,6 +133,19 @@ intellijPlatform {
     }
 }
 
+// JMH 基准只在本地手动运行，不参与 build/check；gc profiler 同时给出每次调用的分配量
+// 光标语境基准直接驱动平台的高亮迭代器接口，需要平台类但不启动 IDE
+configurations.named("jmhCompileClasspath") { extendsFrom(configurations["intellijPlatformClasspath"]) }
+configurations.named("jmhRuntimeClasspath") { extendsFrom(configurations["intellijPlatformClasspath"]) }
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    profilers = listOf("gc")
+}
+
 // Configure Gradle Changelog Plugin - read more: https://github.com/JetBrains/gradle-changelog-plugin
 changelog {
     groups.empty()
@@ -0,0 +1,53 @@
+package editoraction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取光标前的字符：{@link CharLookup} 直接读字符序列 vs 原来按 TextRange 截取子串再取首字符
+ * <p>
+ * 原来的 {@code Document.getText(TextRange)} 等价于对字符序列 subSequence 后 toString，这里不依赖平台类直接复现。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CharLookupBenchmark {
+    private CharSequence text;
+    private TransparentChars transparent;
+    private int offset;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            builder.append("String s = \"中文 测试\"; // 注释, 12\n");
+        }
+        text = builder;
+        transparent = TransparentChars.of(" \t0123456789,.;:!?'\"()[]<>-");
+        // 光标落在 "12" 之后，前面要跳过 ", 12" 才能找到中文
+        offset = builder.indexOf(", 12", builder.length() / 2) + 4;
+    }
+
+    @Benchmark
+    public int adjacentBaseline() {
+        String prefix = offset <= 0 ? "" : text.subSequence(Math.max(0, offset - 1), offset).toString();
+        return prefix.isEmpty() ? CharLookup.NOT_FOUND : prefix.charAt(0);
+    }
+
+    @Benchmark
+    public int adjacentCurrent() {
+        return CharLookup.codePointBefore(text, offset);
+    }
+
+    @Benchmark
+    public int contextCurrent() {
+        return CharLookup.contextCodePoint(text, offset, 8, transparent);
+    }
+}
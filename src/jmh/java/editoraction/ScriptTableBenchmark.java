@@ -0,0 +1,76 @@
+package editoraction;
+
+import enums.InputState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个字符分类：{@link ScriptTable} 两级查表 vs 原来的 UnicodeBlock.of 加块列表线性比较
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScriptTableBenchmark {
+    private static final int SAMPLES = 1024;
+    private static final Character.UnicodeBlock[] CHINESE_BLOCKS = {
+            Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS,
+            Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION,
+            Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS,
+    };
+
+    private ScriptTable table;
+    private int[] codePoints;
+
+    @Setup
+    public void setUp() {
+        table = ScriptTable.cjk(false, false);
+        // 中英文混排的代码和注释
+        int[] source = "String name = \"中文输入法\"; // 切换到英文，继续 typing 测试".codePoints().toArray();
+        codePoints = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            codePoints[i] = source[i % source.length];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int table() {
+        int chinese = 0;
+        for (int codePoint : codePoints) {
+            if (table.classify(codePoint) == InputState.CHINESE) {
+                chinese++;
+            }
+        }
+        return chinese;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int unicodeBlockBaseline() {
+        int chinese = 0;
+        for (int codePoint : codePoints) {
+            if (baseline(codePoint) == InputState.CHINESE) {
+                chinese++;
+            }
+        }
+        return chinese;
+    }
+
+    private static InputState baseline(int codePoint) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        for (Character.UnicodeBlock chineseBlock : CHINESE_BLOCKS) {
+            if (chineseBlock == block) {
+                return InputState.CHINESE;
+            }
+        }
+        return InputState.ENGLISH;
+    }
+}
@@ -0,0 +1,156 @@
+package editoraction;
+
+import com.intellij.lang.Language;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.psi.tree.IElementType;
+import editoraction.TokenContextClassifier.Category;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次光标事件的语境判断开销：{@link TokenContextClassifier} 在已分好 token 的文本上定位并判断
+ * <p>
+ * 不启动 IDE：用按偏移二分查找的迭代器代替编辑器高亮器（与 LexerEditorHighlighter 的定位方式一致），
+ * token 类型和注释语法预先登记，测的是缓存命中后的稳定路径。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenContextClassifierBenchmark {
+    private static final Language LANGUAGE = new Language("KeySwitchBenchmark") {
+    };
+    private static final IElementType CODE = new IElementType("CODE", LANGUAGE);
+    private static final IElementType LINE_COMMENT = new IElementType("LINE_COMMENT", LANGUAGE);
+    private static final IElementType BLOCK_COMMENT = new IElementType("BLOCK_COMMENT", LANGUAGE);
+    private static final IElementType STRING = new IElementType("STRING", LANGUAGE);
+
+    private CharSequence text;
+    private int[] starts;
+    private IElementType[] types;
+    // 光标紧跟在块注释结束符之后：需要回看文本确认已离开注释
+    private int afterBlockComment;
+    private int sweepOffset;
+
+    @Setup
+    public void setUp() {
+        TokenContextClassifier.prime(CODE, Category.CODE, "//", "*/");
+        TokenContextClassifier.prime(LINE_COMMENT, Category.COMMENT, "//", "*/");
+        TokenContextClassifier.prime(BLOCK_COMMENT, Category.COMMENT, "//", "*/");
+        TokenContextClassifier.prime(STRING, Category.STRING, "//", "*/");
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            builder.append("    /* block */ int a = 1; // 行注释\n    String s = \"文本\";\n");
+        }
+        text = builder;
+        tokenize(builder.toString());
+        afterBlockComment = builder.indexOf("*/", builder.length() / 2) + 2;
+        sweepOffset = 1;
+    }
+
+    @Benchmark
+    public Category afterBlockComment() {
+        return TokenContextClassifier.classify(iterator(afterBlockComment - 1), text, afterBlockComment);
+    }
+
+    @Benchmark
+    public Category sweep() {
+        // 逐个偏移移动光标，覆盖代码、注释、字符串内部和边界
+        int offset = sweepOffset;
+        sweepOffset = offset == text.length() ? 1 : offset + 1;
+        return TokenContextClassifier.classify(iterator(offset - 1), text, offset);
+    }
+
+    private HighlighterIterator iterator(int offset) {
+        int index = Arrays.binarySearch(starts, offset);
+        return new TokenIterator(index >= 0 ? index : -index - 2);
+    }
+
+    // 简化的词法：块注释、行注释、字符串，其余连续字符合为一个代码 token
+    private void tokenize(String source) {
+        List<Integer> tokenStarts = new ArrayList<>();
+        List<IElementType> tokenTypes = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            tokenStarts.add(i);
+            if (source.startsWith("/*", i)) {
+                tokenTypes.add(BLOCK_COMMENT);
+                i = source.indexOf("*/", i + 2) + 2;
+            } else if (source.startsWith("//", i)) {
+                tokenTypes.add(LINE_COMMENT);
+                i = source.indexOf('\n', i);
+            } else if (source.charAt(i) == '"') {
+                tokenTypes.add(STRING);
+                i = source.indexOf('"', i + 1) + 1;
+            } else {
+                tokenTypes.add(CODE);
+                while (i < source.length() && !source.startsWith("/*", i) && !source.startsWith("//", i)
+                        && source.charAt(i) != '"') {
+                    i++;
+                }
+            }
+        }
+        starts = tokenStarts.stream().mapToInt(Integer::intValue).toArray();
+        types = tokenTypes.toArray(IElementType[]::new);
+    }
+
+    private class TokenIterator implements HighlighterIterator {
+        private int index;
+
+        TokenIterator(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public TextAttributes getTextAttributes() {
+            return null;
+        }
+
+        @Override
+        public int getStart() {
+            return starts[index];
+        }
+
+        @Override
+        public int getEnd() {
+            return index + 1 < starts.length ? starts[index + 1] : text.length();
+        }
+
+        @Override
+        public IElementType getTokenType() {
+            return types[index];
+        }
+
+        @Override
+        public void advance() {
+            index++;
+        }
+
+        @Override
+        public void retreat() {
+            index--;
+        }
+
+        @Override
+        public boolean atEnd() {
+            return index < 0 || index >= starts.length;
+        }
+
+        @Override
+        public Document getDocument() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package inputmethod.switcher.impl.win32;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口代理（{@link ProxyWin32Api} 的方式）vs 直接映射（{@link DirectWin32Api} 的方式）的单次调用开销
+ * <p>
+ * 用 C 运行库的 abs/strlen 代替 user32/imm32：abs 对应 SendMessage 这类纯数值参数，
+ * strlen 对应 FindWindow 的字符串参数，不依赖 Windows。配合 gc profiler 看每次调用的分配量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Win32BridgeBenchmark {
+
+    public interface CLibrary extends Library {
+        int abs(int value);
+
+        long strlen(String text);
+    }
+
+    private static final class Direct {
+        static {
+            Native.register(NativeLibrary.getInstance(Platform.C_LIBRARY_NAME));
+        }
+
+        static native int abs(int value);
+
+        static native long strlen(String text);
+    }
+
+    private CLibrary proxy;
+    private int value = -42;
+    private String text = "Shell_TrayWnd";
+
+    @Setup
+    public void setUp() {
+        proxy = Native.load(Platform.C_LIBRARY_NAME, CLibrary.class);
+        Direct.abs(0);
+    }
+
+    @Benchmark
+    public int absProxy() {
+        return proxy.abs(value);
+    }
+
+    @Benchmark
+    public int absDirect() {
+        return Direct.abs(value);
+    }
+
+    @Benchmark
+    public long strlenProxy() {
+        return proxy.strlen(text);
+    }
+
+    @Benchmark
+    public long strlenDirect() {
+        return Direct.strlen(text);
+    }
+}
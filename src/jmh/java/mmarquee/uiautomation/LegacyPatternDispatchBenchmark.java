@@ -0,0 +1,157 @@
+package mmarquee.uiautomation;
+
+import com.sun.jna.CallbackReference;
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Guid;
+import com.sun.jna.platform.win32.WTypes;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.PointerByReference;
+import com.sun.jna.win32.StdCallLibrary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LegacyIAccessible 转换器：预解析虚表函数 vs 原来每次调用都 getFunction
+ * <p>
+ * 用 JNA 回调拼一个假的 COM 对象，不依赖真实的托盘按钮。虚表调用使用 stdcall 约定，只能在 Windows 上运行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LegacyPatternDispatchBenchmark {
+    private static final int METHODS = 26;
+
+    // 回调必须被强引用
+    private final NoArg noArg = self -> 0;
+    private final OneArg oneArg = (self, arg) -> 0;
+    private final TwoArgs twoArgs = (self, riid, ppv) -> 0;
+    private Memory vTable;
+    private Memory object;
+
+    private PointerByReference reference;
+    private IUIAutomationLegacyIAccessiblePattern current;
+    private IUIAutomationLegacyIAccessiblePattern baseline;
+    private final PointerByReference name = new PointerByReference();
+
+    @Setup
+    public void setUp() {
+        if (!Platform.isWindows()) {
+            throw new IllegalStateException("COM vtable calls use stdcall and only run on Windows");
+        }
+        vTable = new Memory((long) METHODS * Native.POINTER_SIZE);
+        for (int i = 0; i < METHODS; i++) {
+            vTable.setPointer((long) i * Native.POINTER_SIZE, CallbackReference.getFunctionPointer(noArg));
+        }
+        vTable.setPointer(0, CallbackReference.getFunctionPointer(twoArgs));
+        vTable.setPointer(5L * Native.POINTER_SIZE, CallbackReference.getFunctionPointer(oneArg));
+        vTable.setPointer(7L * Native.POINTER_SIZE, CallbackReference.getFunctionPointer(oneArg));
+        object = new Memory(Native.POINTER_SIZE);
+        object.setPointer(0, vTable);
+
+        reference = new PointerByReference(object);
+        current = IUIAutomationLegacyIAccessiblePatternConverter.pointerToInterface(reference);
+        baseline = BaselineConverter.pointerToInterface(reference);
+    }
+
+    @Benchmark
+    public Object convertCurrent() {
+        return IUIAutomationLegacyIAccessiblePatternConverter.pointerToInterface(reference);
+    }
+
+    @Benchmark
+    public Object convertBaseline() {
+        return BaselineConverter.pointerToInterface(reference);
+    }
+
+    @Benchmark
+    public int doDefaultActionCurrent() {
+        return current.doDefaultAction();
+    }
+
+    @Benchmark
+    public int doDefaultActionBaseline() {
+        return baseline.doDefaultAction();
+    }
+
+    @Benchmark
+    public int getCurrentNameCurrent() {
+        return current.getCurrentName(name);
+    }
+
+    @Benchmark
+    public int getCurrentNameBaseline() {
+        return baseline.getCurrentName(name);
+    }
+
+    public interface NoArg extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer self);
+    }
+
+    public interface OneArg extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer self, Pointer arg);
+    }
+
+    public interface TwoArgs extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer self, Pointer riid, Pointer ppv);
+    }
+
+    /**
+     * 改动前的转换器：每次转换复制整张虚表，每次调用重新 getFunction 并分配参数数组
+     */
+    private static final class BaselineConverter {
+        static IUIAutomationLegacyIAccessiblePattern pointerToInterface(PointerByReference ptr) {
+            final Pointer interfacePointer = ptr.getValue();
+            final Pointer vTablePointer = interfacePointer.getPointer(0);
+            final Pointer[] vTable = new Pointer[METHODS];
+            vTablePointer.read(0, vTable, 0, vTable.length);
+            return new IUIAutomationLegacyIAccessiblePattern() {
+                @Override
+                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pbr) {
+                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
+                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pbr}));
+                }
+
+                @Override
+                public int AddRef() {
+                    return Function.getFunction(vTable[1], Function.ALT_CONVENTION)
+                            .invokeInt(new Object[]{interfacePointer});
+                }
+
+                @Override
+                public int Release() {
+                    return Function.getFunction(vTable[2], Function.ALT_CONVENTION)
+                            .invokeInt(new Object[]{interfacePointer});
+                }
+
+                @Override
+                public int doDefaultAction() {
+                    return Function.getFunction(vTable[4], Function.ALT_CONVENTION)
+                            .invokeInt(new Object[]{interfacePointer});
+                }
+
+                @Override
+                public int setValue(WTypes.BSTR sr) {
+                    return Function.getFunction(vTable[5], Function.ALT_CONVENTION)
+                            .invokeInt(new Object[]{interfacePointer, sr});
+                }
+
+                @Override
+                public int getCurrentName(PointerByReference pszName) {
+                    return Function.getFunction(vTable[7], Function.ALT_CONVENTION)
+                            .invokeInt(new Object[]{interfacePointer, pszName});
+                }
+            };
+        }
+    }
+}
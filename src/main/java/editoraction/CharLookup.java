@@ -0,0 +1,66 @@
+package editoraction;
+
+/**
+ * 在文档字符序列上向前/向后查找第一个有意义的字符
+ * <p>
+ * 直接读取 {@code Document.getImmutableCharSequence()}，按码点处理代理对，不分配对象。
+ */
+public class CharLookup {
+    public static final int NOT_FOUND = -1;
+
+    // 私有构造防止实例化
+    private CharLookup() {
+    }
+
+    /**
+     * 判断光标语境用的码点：跳过透明字符先看前面，前面找不到时看后面，仍找不到时取紧挨着的前一个码点
+     */
+    public static int contextCodePoint(CharSequence text, int offset, int window, TransparentChars transparent) {
+        int codePoint = significantBefore(text, offset, window, transparent);
+        if (codePoint == NOT_FOUND) {
+            codePoint = significantAfter(text, offset, window, transparent);
+        }
+        if (codePoint == NOT_FOUND) {
+            codePoint = codePointBefore(text, offset);
+        }
+        return codePoint;
+    }
+
+    /**
+     * offset 之前跳过透明字符后的第一个码点，窗口（码点数）内没有找到或到达文本开头时返回 {@link #NOT_FOUND}
+     */
+    public static int significantBefore(CharSequence text, int offset, int window, TransparentChars transparent) {
+        int index = Math.min(offset, text.length());
+        for (int i = 0; i < window && index > 0; i++) {
+            int codePoint = Character.codePointBefore(text, index);
+            if (!transparent.contains(codePoint)) {
+                return codePoint;
+            }
+            index -= Character.charCount(codePoint);
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * offset 之后（含 offset）跳过透明字符后的第一个码点，窗口内没有找到或到达文本末尾时返回 {@link #NOT_FOUND}
+     */
+    public static int significantAfter(CharSequence text, int offset, int window, TransparentChars transparent) {
+        int index = Math.max(offset, 0);
+        int length = text.length();
+        for (int i = 0; i < window && index < length; i++) {
+            int codePoint = Character.codePointAt(text, index);
+            if (!transparent.contains(codePoint)) {
+                return codePoint;
+            }
+            index += Character.charCount(codePoint);
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * offset 之前紧挨着的码点，没有时返回 {@link #NOT_FOUND}
+     */
+    public static int codePointBefore(CharSequence text, int offset) {
+        return offset <= 0 || offset > text.length() ? NOT_FOUND : Character.codePointBefore(text, offset);
+    }
+}
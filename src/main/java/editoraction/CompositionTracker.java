@@ -0,0 +1,60 @@
+package editoraction;
+
+import com.intellij.ide.IdeEventQueue;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.event.InputMethodEvent;
+import java.text.AttributedCharacterIterator;
+import java.util.function.Consumer;
+
+/**
+ * 通过 InputMethodEvent 跟踪输入法组字状态
+ * <p>
+ * 组字期间编辑器里会出现拼音等未上屏的字母，此时触发的光标移动不应参与判断；
+ * 组字结束（上屏或取消）时回调一次，由调用方在最终位置判断一次。
+ */
+public class CompositionTracker implements IdeEventQueue.EventDispatcher {
+    private final Consumer<Component> onCompositionEnd;
+    // 正在组字的组件，没有组字时为 null，只在 EDT 上读写
+    private Component composingComponent;
+
+    public CompositionTracker(Consumer<Component> onCompositionEnd) {
+        this.onCompositionEnd = onCompositionEnd;
+    }
+
+    public boolean isComposing() {
+        return composingComponent != null;
+    }
+
+    /**
+     * 焦点离开时输入法不一定会发送结束事件，直接清除组字状态
+     */
+    public void reset() {
+        composingComponent = null;
+    }
+
+    @Override
+    public boolean dispatch(@NotNull AWTEvent e) {
+        if (!(e instanceof InputMethodEvent event) || event.getID() != InputMethodEvent.INPUT_METHOD_TEXT_CHANGED) {
+            return false;
+        }
+        Component source = (Component) event.getSource();
+        if (hasComposedText(event)) {
+            composingComponent = source;
+        } else if (composingComponent != null) {
+            composingComponent = null;
+            onCompositionEnd.accept(source);
+        }
+        // 只观察不拦截
+        return false;
+    }
+
+    private static boolean hasComposedText(InputMethodEvent event) {
+        AttributedCharacterIterator text = event.getText();
+        if (text == null) {
+            return false;
+        }
+        return event.getCommittedCharacterCount() < text.getEndIndex() - text.getBeginIndex();
+    }
+}
@@ -1,25 +1,39 @@
 package editoraction;
 
+import com.intellij.ide.IdeEventQueue;
 import com.intellij.openapi.CompositeDisposable;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.AnActionResult;
+import com.intellij.openapi.actionSystem.ex.AnActionListener;
 import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.actionSystem.IdeActions;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.CommandEvent;
+import com.intellij.openapi.command.CommandListener;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
 import com.intellij.openapi.editor.actionSystem.EditorActionManager;
 import com.intellij.openapi.editor.event.*;
+import com.intellij.openapi.editor.ex.EditorEventMulticasterEx;
+import com.intellij.openapi.editor.ex.FocusChangeListener;
 import com.intellij.openapi.editor.ex.util.EditorUtil;
 import com.intellij.openapi.util.Disposer;
-import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.SystemInfo;
 import com.intellij.util.Alarm;
+import com.intellij.util.messages.MessageBusConnection;
 import enums.InputState;
+import enums.MultiCaretPolicy;
 import inputmethod.cursor.CursorHandle;
-import inputmethod.switcher.InputMethodSwitcher;
+import inputmethod.switcher.InputStateCache;
+import inputmethod.switcher.SwitchExecutorService;
+import inputmethod.switcher.impl.ime.ImeWindowProbe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 import utlis.LogUtil;
 import state.SettingsState;
 
@@ -27,22 +41,38 @@ import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.beans.PropertyChangeListener;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.*;
 
 //import static editoraction.FocusHandel.*;
 
 @Service(Service.Level.APP)
 public final class CursorTrackerService implements Disposable {
-    private static final long EVENT_THRESHOLD = 100; // 事件过滤阈值（毫秒）
-    private static final Character.UnicodeBlock[] CHINESE_BLOCKS = { // 中文相关Unicode区块
-            Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS,
-            Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION,
-            Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
-    };
+    // 不触发光标事件、或光标落在修改区间内会被当成输入丢弃的动作，结束后直接判断一次
+    // Enter、Backspace、Tab 等输入类动作不在其中，仍经过输入过滤，避免在中文注释里换行就被切回英文
+    private static final Set<String> FORCED_ACTIONS = Set.of(
+            IdeActions.ACTION_PASTE, IdeActions.ACTION_EDITOR_PASTE, IdeActions.ACTION_EDITOR_PASTE_SIMPLE,
+            "PasteMultiple",
+            IdeActions.ACTION_CUT, IdeActions.ACTION_EDITOR_CUT,
+            IdeActions.ACTION_UNDO, IdeActions.ACTION_REDO,
+            IdeActions.ACTION_EDITOR_JOIN_LINES);
     private final CompositeDisposable composite = new CompositeDisposable();
-    private final Map<Editor, Long> lastInputTimeMap = new ConcurrentHashMap<>();
+    // 每个文档最近一次修改后的时间戳和修改区间，只在 EDT 上读写；文档关闭后随之回收
+    private final Map<Document, ChangeRecord> changeRecords = new WeakHashMap<>();
     private final Map<Editor, Boolean> selectionStateMap = new ConcurrentHashMap<>();
+    // 所有编辑器共用一个延迟队列，新的光标事件替换尚未执行的请求（尾沿防抖）
+    private final Alarm caretAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    // 输入法组字期间不做判断，上屏后判断一次
+    private final CompositionTracker composition = new CompositionTracker(this::onCompositionEnd);
+    // 命令、动作、批量更新期间不做判断，结束后判断一次
+    private final EditSpanTracker editSpan = new EditSpanTracker(this::onEditSpanEnd);
+    // 刚结束组字或编辑区间、下一次判断不经过输入过滤的编辑器，只在 EDT 上读写
+    private Editor forcedEditor;
+    // 延迟队列中等待判断的编辑器，只在 EDT 上读写
+    private Editor pendingCaretEditor;
 
     public CursorTrackerService() {
         EditorEventMulticaster editorEventMulticaster = EditorFactory.getInstance().getEventMulticaster();
@@ -50,6 +80,8 @@ public final class CursorTrackerService implements Disposable {
         setupCaretListener(editorEventMulticaster);
         setupMouseListener(editorEventMulticaster);
         setupEditorLifecycleListener();
+        setupImeStateInvalidation(editorEventMulticaster);
+        setupEditSpanListener();
 //        setupFocusListener();
 
         Disposer.register(this, this::disposeResources);
@@ -61,8 +93,11 @@ public final class CursorTrackerService implements Disposable {
     }
 
     private void disposeResources() {
+        caretAlarm.cancelAllRequests();
         composite.dispose();
-        lastInputTimeMap.clear();
+        changeRecords.clear();
+        pendingCaretEditor = null;
+        editSpan.reset();
         selectionStateMap.clear();
     }
 
@@ -70,16 +105,92 @@ public final class CursorTrackerService implements Disposable {
         multicaster.addDocumentListener(new DocumentListener() {
             @Override
             public void documentChanged(@NotNull DocumentEvent event) {
-                updateLastInputTime(event.getDocument());
+                recordDocumentChange(event);
+                editSpan.documentChanged(event.getDocument());
+            }
+
+            //批量更新（格式化、VCS 更新等）；已废弃的 DocumentBulkUpdateListener 由这两个回调代替
+            @Override
+            public void bulkUpdateStarting(@NotNull Document document) {
+                editSpan.begin(true);
+            }
+
+            @Override
+            public void bulkUpdateFinished(@NotNull Document document) {
+                editSpan.documentChanged(document);
+                editSpan.end();
             }
         }, composite);
     }
 
-    private void updateLastInputTime(Document document) {
-        long currentTime = System.currentTimeMillis();
-        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
-            lastInputTimeMap.put(editor, currentTime);
+    // 按文档分别记录，其他文档的修改不会覆盖当前文档的记录。
+    // 多光标输入时每个光标各产生一次修改，中间没有其他修改时合并区间，主光标无论先后处理都落在区间内
+    private void recordDocumentChange(DocumentEvent event) {
+        Document document = event.getDocument();
+        int start = event.getOffset();
+        int end = start + event.getNewLength();
+        ChangeRecord previous = changeRecords.get(document);
+        if (previous != null && previous.stamp() == event.getOldTimeStamp()) {
+            start = Math.min(start, shiftOffset(event, previous.start()));
+            end = Math.max(end, shiftOffset(event, previous.end()));
+        }
+        changeRecords.put(document, new ChangeRecord(document.getModificationStamp(), start, end));
+    }
+
+    // 修改之前的偏移映射到修改之后：修改区间之后的随之平移，被替换部分内的落到新文本末尾
+    private static int shiftOffset(DocumentEvent event, int offset) {
+        if (offset <= event.getOffset()) {
+            return offset;
+        }
+        if (offset >= event.getOffset() + event.getOldLength()) {
+            return offset + event.getNewLength() - event.getOldLength();
+        }
+        return event.getOffset() + event.getNewLength();
+    }
+
+    //命令（输入、替换、重构等）和粘贴、剪切、撤销/重做、合并行动作执行期间只记录，最外层结束后判断一次
+    private void setupEditSpanListener() {
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(composite);
+        connection.subscribe(CommandListener.TOPIC, new CommandListener() {
+            @Override
+            public void commandStarted(@NotNull CommandEvent event) {
+                editSpan.begin(false);
+            }
+
+            @Override
+            public void commandFinished(@NotNull CommandEvent event) {
+                editSpan.end();
+            }
+        });
+        connection.subscribe(AnActionListener.TOPIC, new AnActionListener() {
+            @Override
+            public void beforeActionPerformed(@NotNull AnAction action, @NotNull AnActionEvent event) {
+                if (isForcedAction(action)) {
+                    editSpan.begin(true);
+                }
+            }
+
+            @Override
+            public void afterActionPerformed(@NotNull AnAction action, @NotNull AnActionEvent event,
+                                             @NotNull AnActionResult result) {
+                if (isForcedAction(action)) {
+                    editSpan.end();
+                }
+            }
+        });
+    }
+
+    private static boolean isForcedAction(AnAction action) {
+        String id = ActionManager.getInstance().getId(action);
+        return id != null && FORCED_ACTIONS.contains(id);
+    }
+
+    //输入这类普通命令仍经过输入过滤；粘贴、撤销等动作和批量更新在最终光标位置直接判断
+    private void onEditSpanEnd(Editor editor, boolean forced) {
+        if (forced) {
+            forcedEditor = editor;
         }
+        handleCaretMovement(editor);
     }
 
     private void setupCaretListener(EditorEventMulticaster multicaster) {
@@ -87,6 +198,10 @@ public final class CursorTrackerService implements Disposable {
             //光标变化
             @Override
             public void caretPositionChanged(@NotNull CaretEvent event) {
+                if (editSpan.isActive()) {
+                    editSpan.caretMoved(event.getEditor());
+                    return;
+                }
                 handleCaretMovement(event.getEditor());
             }
         }, composite);
@@ -123,13 +238,56 @@ public final class CursorTrackerService implements Disposable {
             @Override
             public void editorReleased(@NotNull EditorFactoryEvent event) {
                 Editor editor = event.getEditor();
-                lastInputTimeMap.remove(editor);
                 selectionStateMap.remove(editor);
+                if (forcedEditor == editor) {
+                    forcedEditor = null;
+                }
             }
         }, composite);
 
     }
 
+    //输入法状态缓存失效：窗口(重新)激活、焦点离开编辑器、用户手动切换输入法
+    private void setupImeStateInvalidation(EditorEventMulticaster multicaster) {
+        PropertyChangeListener activeWindowListener = e -> {
+            if (SystemInfo.isWindows) {
+                ImeWindowProbe.windowActivated((Window) e.getNewValue());
+            }
+            if (e.getNewValue() != null) {
+                InputStateCache.invalidate("窗口激活");
+            }
+        };
+        KeyboardFocusManager focusManager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+        focusManager.addPropertyChangeListener("activeWindow", activeWindowListener);
+        Disposer.register(this, () -> focusManager.removePropertyChangeListener("activeWindow", activeWindowListener));
+
+        if (multicaster instanceof EditorEventMulticasterEx multicasterEx) {
+            multicasterEx.addFocusChangeListener(new FocusChangeListener() {
+                @Override
+                public void focusLost(@NotNull Editor editor) {
+                    composition.reset();
+                    InputStateCache.invalidate("焦点离开编辑器");
+                }
+            }, this);
+        }
+
+        // 注入的 Shift 在预处理阶段吞掉，早于所有分发器（含连按两次 Shift 的处理），再观察用户的手动切换
+        IdeEventQueue.getInstance().addPreprocessor(new InjectedKeySuppressor(), this);
+        IdeEventQueue.getInstance().addDispatcher(new ImeToggleWatcher(), this);
+        IdeEventQueue.getInstance().addDispatcher(composition, this);
+    }
+
+    //组字结束时文档还没有写入上屏的文字，随后的光标事件会替换这里的请求，由 forcedEditor 标记这一次不被丢弃
+    private void onCompositionEnd(Component source) {
+        for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+            if (editor.getContentComponent() == source) {
+                forcedEditor = editor;
+                handleCaretMovement(editor);
+                return;
+            }
+        }
+    }
+
     //焦点变化监听器
 //    private void setupFocusListener() {
 //        KeyboardFocusManager.getCurrentKeyboardFocusManager()
@@ -156,20 +314,47 @@ public final class CursorTrackerService implements Disposable {
 
 
     private void handleCaretMovement(Editor editor) {
+        // 多光标时每个光标各触发一次事件，同一编辑器已在队列中时直接合并，整批只判断一次
+        if (pendingCaretEditor == editor && !caretAlarm.isEmpty()) {
+            return;
+        }
         //fix 延迟执行等待selectionModel.hasSelection()、selectionModel.getSelectionStart()/getSelectionEnd()更新最新的光标位置状态
-        Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
-        alarm.addRequest(() -> {
-            if (editor.isDisposed()) {
-                return;
-            }
-            if (isWithinSelectionBoundary(editor)) {
-                LogUtil.debug(" 检测到文本选择，跳过输入法切换");
-                return;
-            }
-            if (shouldProcessMovement(editor)) {
-                switchInputOnChar(editor);
-            }
-        }, 1);
+        caretAlarm.cancelAllRequests();
+        pendingCaretEditor = editor;
+        caretAlarm.addRequest(() -> evaluateCaret(editor), 1);
+    }
+
+    @TestOnly
+    int pendingCaretRequests() {
+        return caretAlarm.getActiveRequestCount();
+    }
+
+    private void evaluateCaret(Editor editor) {
+        pendingCaretEditor = null;
+        if (editor.isDisposed()) {
+            return;
+        }
+        if (composition.isComposing()) {
+            LogUtil.debug("输入法组字中，跳过输入法切换");
+            return;
+        }
+        if (editSpan.isActive()) {
+            // 延迟期间又进入了命令或动作，交给区间结束时处理
+            editSpan.caretMoved(editor);
+            return;
+        }
+        if (isWithinSelectionBoundary(editor)) {
+            LogUtil.debug(" 检测到文本选择，跳过输入法切换");
+            return;
+        }
+        if (editor == forcedEditor) {
+            // 上屏或编辑区间结束后在最终位置判断一次，不再当成输入丢弃
+            forcedEditor = null;
+            changeRecords.remove(editor.getDocument());
+            switchInputOnChar(editor);
+        } else if (shouldProcessMovement(editor)) {
+            switchInputOnChar(editor);
+        }
     }
 
     // 特殊区域检测 但是现在和前一个字符判断有逻辑冲突 还没想好怎么使用
@@ -249,64 +434,101 @@ public final class CursorTrackerService implements Disposable {
 
     }
 
-    private boolean switchInputOnState(InputState state) {
-        InputState currentMode = InputMethodSwitcher.getCurrentMode();
-        LogUtil.debug("当前输入法状态：" + currentMode);
-        boolean b = !state.equals(currentMode);
-        if (b) {
-            LogUtil.info(" 触发输入法切换");
-            InputMethodSwitcher.change();
-        }
-        return b;
+    //原生查询和切换都交给切换线程，EDT 只投递期望状态
+    private void switchInputOnState(Editor editor, InputState state) {
+        SwitchExecutorService.getInstance().submit(state, switched ->
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (!editor.isDisposed()) {
+                        CursorHandle.change(editor, switched);
+                    }
+                }));
     }
 
+    //多光标时整批只做一次决定、最多投递一次切换
     private void switchInputOnChar(Editor editor) {
-        int offset = editor.getCaretModel().getOffset();
-        String prefix = getPrefixText(editor, offset, 1);
-        if (prefix.isEmpty()) {
+        CaretModel caretModel = editor.getCaretModel();
+        InputState target = targetStateAt(editor, caretModel.getOffset());
+        if (caretModel.getCaretCount() > 1
+                && SettingsState.getInstance().multiCaretPolicy == MultiCaretPolicy.MAJORITY) {
+            target = majorityState(editor, target);
+        }
+        if (target == null) {
             return;
         }
-        InputState prevCharState = getCharacterState(prefix.charAt(0));
-        LogUtil.debug("前一个字符：" + prefix.charAt(0));
-        LogUtil.debug("前一个字符状态：" + prevCharState);
-        if (switchInputOnState(prevCharState)) {
-            CursorHandle.change(editor, prevCharState);
+        LogUtil.debug("目标状态：" + target);
+        switchInputOnState(editor, target);
+    }
+
+    //统计每个光标的目标状态，中英文数量相同时按主光标
+    private InputState majorityState(Editor editor, InputState primary) {
+        int chinese = 0;
+        int english = 0;
+        for (Caret caret : editor.getCaretModel().getAllCarets()) {
+            InputState state = targetStateAt(editor, caret.getOffset());
+            if (state == InputState.CHINESE) {
+                chinese++;
+            } else if (state == InputState.ENGLISH) {
+                english++;
+            }
+        }
+        LogUtil.debug("多光标统计 中文:" + chinese + " 英文:" + english);
+        if (chinese == english) {
+            return primary;
         }
+        return chinese > english ? InputState.CHINESE : InputState.ENGLISH;
     }
 
-    //因为每次汉字输入候选框时在编辑器中有字母字符，这里就必须丢弃键盘事件触发的光标移动，不然会出现打不了汉字，刚输入汉字就被切换为英文输入法了
+    //光标位置的目标状态，无法判断（文件开头）时返回 null
+    private static InputState targetStateAt(Editor editor, int offset) {
+        // 注释、字符串中配置了目标状态时优先于前一个字符
+        InputState contextState = TokenContextClassifier.targetState(editor, offset);
+        if (contextState != InputState.NONE) {
+            return contextState;
+        }
+        if (offset <= 0) {
+            return null;
+        }
+        CharSequence text = editor.getDocument().getImmutableCharSequence();
+        SettingsState settings = SettingsState.getInstance();
+        TransparentChars transparent = TransparentChars.of(settings.transparentChars);
+        // 跳过空格、数字、标点等透明字符；前面找不到时看后面，仍找不到时按紧挨着的字符判断
+        int codePoint = CharLookup.contextCodePoint(text, offset, settings.lookAroundWindow, transparent);
+        return getCharacterState(codePoint);
+    }
+
+    //因为每次汉字输入候选框时在编辑器中有字母字符，这里就必须丢弃键盘输入触发的光标移动，不然会出现打不了汉字，刚输入汉字就被切换为英文输入法了
+    //组字状态由 CompositionTracker 直接跟踪，这里处理的是组字之外的普通输入
+    //文档在上次修改后没有再变化、光标仍落在修改区间内，说明这次光标移动就是输入本身带来的；
+    //共享同一文档的其他编辑器的光标随修改平移，也不处理。匹配一次后即作废，之后的方向键等移动照常处理
     //    IDEA平台存在BUG
     //    Ctrl+V（粘贴）、Ctrl+X（选中文本时剪贴、没选择文本时删除当前行）、Ctrl+Z（撤销）、Ctrl+SHIFT+Z（重做）
     //    Ctrl+Alt+Enter（换行并将光标移动至上一行）
     //    并没有触发光标移动
-    //todo 上述没有触发光标移动事件，光标移动了的操作都需要额外判断，不应丢弃事件
+    //    粘贴、剪切、撤销/重做由 EditSpanTracker 在动作结束后按文档变化找到编辑器判断一次，不经过这里；
+    //    Ctrl+Alt+Enter 和 Enter 一样属于换行输入，仍经过这里
     private boolean shouldProcessMovement(Editor editor) {
-        long lastInputTime = lastInputTimeMap.getOrDefault(editor, 0L);
-        long elapsed = System.currentTimeMillis() - lastInputTime;
-        if (elapsed > EVENT_THRESHOLD) {
+        Document document = editor.getDocument();
+        ChangeRecord change = changeRecords.get(document);
+        if (change == null || document.getModificationStamp() != change.stamp()) {
             return true;
         }
-
-        LogUtil.debug("丢弃由键盘输入触发的光标移动事件（时间阈值）");
+        if (!editor.getContentComponent().isFocusOwner()) {
+            return false;
+        }
+        int offset = editor.getCaretModel().getOffset();
+        if (offset < change.start() || offset > change.end()) {
+            return true;
+        }
+        changeRecords.remove(document);
+        LogUtil.debug("丢弃由文档修改触发的光标移动事件");
         return false;
     }
 
-    private static InputState getCharacterState(char c) {
-        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
-        for (Character.UnicodeBlock chineseBlock : CHINESE_BLOCKS) {
-            if (chineseBlock.equals(block)) {
-                return InputState.CHINESE;
-            }
-        }
-        return InputState.ENGLISH;
+    private static InputState getCharacterState(int codePoint) {
+        return ScriptTable.current().classify(codePoint);
     }
 
-    private String getPrefixText(Editor editor, int offset, int length) {
-        if (offset <= 0 || length <= 0) {
-            return "";
-        }
-        int start = Math.max(0, offset - length);
-        Document doc = editor.getDocument();
-        return doc.getText(new TextRange(start, offset));
+    // 修改后的文档时间戳和修改区间（修改后的偏移）
+    private record ChangeRecord(long stamp, int start, int end) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package editoraction;
+
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 跟踪命令、动作和批量更新的执行区间
+ * <p>
+ * 格式化、粘贴、撤销/重做、VCS 更新、多文件替换会在一个区间内触发成串的文档和光标事件，
+ * 区间内只记录最后涉及的编辑器，最外层区间结束时回调一次，由调用方在最终光标位置判断一次。
+ * 区间内打开了模态对话框（重命名、设置等）时，对话框里的事件不计入区间，照常处理。
+ * 只在 EDT 上使用。
+ */
+public class EditSpanTracker {
+    private final BiConsumer<Editor, Boolean> onSpanEnd;
+    // 嵌套深度：命令里会执行动作，动作里会开启命令
+    private int depth;
+    // 区间内是否有粘贴、撤销等动作或批量更新，这类区间结束后的判断不经过输入过滤
+    private boolean forced;
+    // 最外层区间开始时的模态状态
+    private ModalityState modality;
+    private Editor caretEditor;
+    private Document changedDocument;
+
+    public EditSpanTracker(BiConsumer<Editor, Boolean> onSpanEnd) {
+        this.onSpanEnd = onSpanEnd;
+    }
+
+    public boolean isActive() {
+        return depth > 0 && !ModalityState.current().dominates(modality);
+    }
+
+    /**
+     * @param forced 粘贴、撤销等动作和批量更新传 true：它们不会触发光标事件，或光标落在修改区间内会被当成输入丢弃
+     */
+    public void begin(boolean forced) {
+        if (depth == 0) {
+            modality = ModalityState.current();
+        } else if (!isActive()) {
+            // 模态对话框里的命令和动作不影响外层区间
+            return;
+        }
+        depth++;
+        this.forced |= forced;
+    }
+
+    public void end() {
+        // 模态对话框里开始的区间在 begin 时没有计入
+        if (!isActive()) {
+            return;
+        }
+        if (--depth > 0) {
+            return;
+        }
+        Editor editor = caretEditor != null ? caretEditor : focusedEditor(changedDocument);
+        boolean force = forced;
+        forced = false;
+        caretEditor = null;
+        changedDocument = null;
+        if (editor != null && !editor.isDisposed()) {
+            onSpanEnd.accept(editor, force);
+        }
+    }
+
+    public void caretMoved(Editor editor) {
+        caretEditor = editor;
+    }
+
+    public void documentChanged(Document document) {
+        if (isActive()) {
+            changedDocument = document;
+        }
+    }
+
+    public void reset() {
+        depth = 0;
+        modality = null;
+        forced = false;
+        caretEditor = null;
+        changedDocument = null;
+    }
+
+    // 只有文档变化、没有光标事件时（粘贴、撤销等），取持有焦点的那个编辑器
+    private static Editor focusedEditor(Document document) {
+        if (document == null) {
+            return null;
+        }
+        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
+            if (editor.getContentComponent().isFocusOwner()) {
+                return editor;
+            }
+        }
+        return null;
+    }
+}
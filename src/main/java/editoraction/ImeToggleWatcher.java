@@ -0,0 +1,41 @@
+package editoraction;
+
+import com.intellij.ide.IdeEventQueue;
+import inputmethod.switcher.InputStateCache;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+
+/**
+ * 监听用户手动切换输入法的快捷键（单独按下并释放 Shift、Ctrl+Space），发生时让输入法状态缓存失效
+ */
+public class ImeToggleWatcher implements IdeEventQueue.EventDispatcher {
+    // Shift 按下后是否还没有按过其他键，只在 EDT 上读写
+    private boolean shiftAlone;
+
+    @Override
+    public boolean dispatch(@NotNull AWTEvent e) {
+        if (!(e instanceof KeyEvent keyEvent)) {
+            return false;
+        }
+        int keyCode = keyEvent.getKeyCode();
+        if (keyEvent.getID() == KeyEvent.KEY_PRESSED) {
+            if (keyCode == KeyEvent.VK_SHIFT) {
+                shiftAlone = true;
+            } else {
+                shiftAlone = false;
+                if (keyCode == KeyEvent.VK_SPACE && keyEvent.isControlDown()) {
+                    InputStateCache.invalidate("Ctrl+Space");
+                }
+            }
+        } else if (keyEvent.getID() == KeyEvent.KEY_RELEASED && keyCode == KeyEvent.VK_SHIFT) {
+            if (shiftAlone) {
+                InputStateCache.invalidate("Shift");
+            }
+            shiftAlone = false;
+        }
+        // 只观察不拦截
+        return false;
+    }
+}
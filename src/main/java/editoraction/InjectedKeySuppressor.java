@@ -0,0 +1,33 @@
+package editoraction;
+
+import com.intellij.ide.IdeEventQueue;
+import inputmethod.switcher.impl.InjectedKeyTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+
+/**
+ * 在 IDE 按键分发之前吞掉插件自己注入的 Shift 事件，作为预处理器注册，先于所有分发器执行
+ * <p>
+ * 系统输入法在事件进入 IDE 之前就已经处理过这些按键，吞掉后不会再触发连按两次 Shift 的 Search Everywhere，
+ * 也不会被 {@link ImeToggleWatcher} 当成用户手动切换。
+ */
+public class InjectedKeySuppressor implements IdeEventQueue.EventDispatcher {
+
+    @Override
+    public boolean dispatch(@NotNull AWTEvent e) {
+        if (!(e instanceof KeyEvent keyEvent) || keyEvent.getKeyCode() != KeyEvent.VK_SHIFT) {
+            return false;
+        }
+        int id = keyEvent.getID();
+        if (id != KeyEvent.KEY_PRESSED && id != KeyEvent.KEY_RELEASED) {
+            return false;
+        }
+        if (InjectedKeyTracker.consume()) {
+            keyEvent.consume();
+            return true;
+        }
+        return false;
+    }
+}
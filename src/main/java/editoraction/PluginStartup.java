@@ -2,6 +2,7 @@ package editoraction;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import inputmethod.switcher.SwitchExecutorService;
 import kotlin.Unit;
 import kotlin.coroutines.Continuation;
 import org.jetbrains.annotations.NotNull;
@@ -10,6 +11,10 @@ import org.jetbrains.annotations.Nullable;
 public class PluginStartup implements com.intellij.openapi.startup.ProjectActivity {
     @Override
     public @Nullable Object execute(@NotNull Project project, @NotNull Continuation<? super Unit> continuation) {
+        // 后台预热切换引擎，避免首次切换时在加载原生库和扫描托盘上耗时
+        SwitchExecutorService.getInstance().warmUp();
+        // 字符分类表在后台构建，不占用首次光标事件
+        ScriptTable.current();
         return ApplicationManager.getApplication().getService(CursorTrackerService.class);
     }
 }
\ No newline at end of file
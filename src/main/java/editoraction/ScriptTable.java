@@ -0,0 +1,141 @@
+package editoraction;
+
+import enums.InputState;
+import state.SettingsState;
+
+import java.util.Arrays;
+
+/**
+ * 码点到输入法状态的两级查找表
+ * <p>
+ * 第一级按码点高位（每 256 个码点一块）索引，第二级是块内的字节表；整块取值相同的块共用同一张表，
+ * 整个 Unicode 范围只有少数块需要独立存储。构建一次后分类为 O(1)，不分配对象。
+ */
+public final class ScriptTable {
+    private static final int SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << SHIFT;
+    private static final int BLOCK_COUNT = (Character.MAX_CODE_POINT + 1) >> SHIFT;
+
+    private static volatile ScriptTable cached;
+    private static volatile int cachedKey = -1;
+
+    private final byte[][] blocks;
+    private final InputState[] states;
+
+    private ScriptTable(byte[][] blocks, InputState[] states) {
+        this.blocks = blocks;
+        this.states = states;
+    }
+
+    public InputState classify(int codePoint) {
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+            return states[0];
+        }
+        return states[blocks[codePoint >>> SHIFT][codePoint & (BLOCK_SIZE - 1)]];
+    }
+
+    /**
+     * 按当前设置（是否包含假名、谚文）取得查找表，设置未变化时复用
+     */
+    public static ScriptTable current() {
+        SettingsState settings = SettingsState.getInstance();
+        int key = (settings.kanaAsNative ? 1 : 0) | (settings.hangulAsNative ? 2 : 0);
+        ScriptTable table = cached;
+        if (table == null || cachedKey != key) {
+            table = cjk(settings.kanaAsNative, settings.hangulAsNative);
+            cached = table;
+            cachedKey = key;
+        }
+        return table;
+    }
+
+    /**
+     * 中文（含 CJK 扩展 A～I、兼容汉字、全角符号）映射为 CHINESE，其余为 ENGLISH
+     */
+    public static ScriptTable cjk(boolean kana, boolean hangul) {
+        Builder builder = builder(InputState.ENGLISH)
+                .map(0x2E80, 0x2FDF, InputState.CHINESE)    // 部首补充、康熙部首
+                .map(0x2FF0, 0x303F, InputState.CHINESE)    // 汉字结构描述符、CJK 符号和标点
+                .map(0x3100, 0x312F, InputState.CHINESE)    // 注音符号
+                .map(0x31A0, 0x31EF, InputState.CHINESE)    // 注音扩展、笔画
+                .map(0x3200, 0x33FF, InputState.CHINESE)    // 带圈字符、CJK 兼容符号
+                .map(0x3400, 0x4DBF, InputState.CHINESE)    // 扩展 A
+                .map(0x4E00, 0x9FFF, InputState.CHINESE)    // 基本汉字
+                .map(0xF900, 0xFAFF, InputState.CHINESE)    // 兼容汉字
+                .map(0xFE30, 0xFE4F, InputState.CHINESE)    // CJK 兼容形式
+                .map(0xFF00, 0xFFEF, InputState.CHINESE)    // 半角及全角形式
+                .map(0x16FE0, 0x16FFF, InputState.CHINESE)  // 表意符号和标点
+                .map(0x20000, 0x3FFFF, InputState.CHINESE); // 第二、三平面：扩展 B～I、兼容汉字补充
+        if (kana) {
+            builder.map(0x3040, 0x30FF, InputState.CHINESE)
+                    .map(0x31F0, 0x31FF, InputState.CHINESE)
+                    .map(0x1AFF0, 0x1B16F, InputState.CHINESE)  // 假名扩展 B、假名补充、假名扩展 A、小假名扩展
+                    .map(0x1F200, 0x1F200, InputState.CHINESE); // 方框平假名「ほか」
+        }
+        if (hangul) {
+            builder.map(0x1100, 0x11FF, InputState.CHINESE)
+                    .map(0x3130, 0x318F, InputState.CHINESE)
+                    .map(0xA960, 0xA97F, InputState.CHINESE)
+                    .map(0xAC00, 0xD7FF, InputState.CHINESE);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder(InputState defaultState) {
+        return new Builder(defaultState);
+    }
+
+    /**
+     * 按码点区间构建查找表，后添加的区间覆盖先添加的
+     */
+    public static final class Builder {
+        private final byte[] values = new byte[Character.MAX_CODE_POINT + 1];
+        private final InputState[] states = new InputState[InputState.values().length + 1];
+        private int stateCount;
+
+        private Builder(InputState defaultState) {
+            states[stateCount++] = defaultState;
+        }
+
+        public Builder map(int start, int end, InputState state) {
+            if (start < 0 || end > Character.MAX_CODE_POINT || start > end) {
+                throw new IllegalArgumentException("Invalid code point range: " + start + "-" + end);
+            }
+            Arrays.fill(values, start, end + 1, indexOf(state));
+            return this;
+        }
+
+        public ScriptTable build() {
+            byte[][] shared = new byte[stateCount][];
+            byte[][] blocks = new byte[BLOCK_COUNT][];
+            for (int block = 0; block < BLOCK_COUNT; block++) {
+                int from = block << SHIFT;
+                byte first = values[from];
+                boolean uniform = true;
+                for (int i = 1; i < BLOCK_SIZE && uniform; i++) {
+                    uniform = values[from + i] == first;
+                }
+                if (uniform) {
+                    if (shared[first] == null) {
+                        shared[first] = new byte[BLOCK_SIZE];
+                        Arrays.fill(shared[first], first);
+                    }
+                    blocks[block] = shared[first];
+                } else {
+                    blocks[block] = Arrays.copyOfRange(values, from, from + BLOCK_SIZE);
+                }
+            }
+            return new ScriptTable(blocks, Arrays.copyOf(states, stateCount));
+        }
+
+        private byte indexOf(InputState state) {
+            for (int i = 0; i < stateCount; i++) {
+                if (states[i] == state) {
+                    return (byte) i;
+                }
+            }
+            states[stateCount] = state;
+            return (byte) stateCount++;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package editoraction;
+
+import com.intellij.lang.Commenter;
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageCommenters;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.lang.ParserDefinition;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.text.CharArrayUtil;
+import enums.InputState;
+import org.jetbrains.annotations.TestOnly;
+import state.SettingsState;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按编辑器高亮器已经算好的 token 判断光标所处的语境（注释、字符串、代码）
+ * <p>
+ * 不走 PSI，光标事件里只需要一次高亮迭代器定位；token 类型到语境的映射按 IElementType 缓存。
+ */
+public class TokenContextClassifier {
+    private static final Map<IElementType, Category> CATEGORY_CACHE = new ConcurrentHashMap<>();
+    // 语言的行注释前缀和块注释结束符，没有的为空串
+    private static final Map<Language, CommentSyntax> COMMENT_SYNTAX_CACHE = new ConcurrentHashMap<>();
+
+    public enum Category {
+        CODE, COMMENT, STRING
+    }
+
+    // 私有构造防止实例化
+    private TokenContextClassifier() {
+    }
+
+    /**
+     * 光标所在语境配置的目标输入法状态，未配置或处于代码中时返回 NONE
+     */
+    public static InputState targetState(Editor editor, int offset) {
+        SettingsState settings = SettingsState.getInstance();
+        if (settings.commentInputState == InputState.NONE && settings.stringInputState == InputState.NONE) {
+            return InputState.NONE;
+        }
+        return switch (classify(editor, offset)) {
+            case COMMENT -> settings.commentInputState;
+            case STRING -> settings.stringInputState;
+            case CODE -> InputState.NONE;
+        };
+    }
+
+    public static Category classify(Editor editor, int offset) {
+        if (!(editor instanceof EditorEx editorEx) || offset <= 0) {
+            return Category.CODE;
+        }
+        // 取光标前一个字符所在的 token
+        HighlighterIterator iterator = editorEx.getHighlighter().createIterator(offset - 1);
+        return classify(iterator, editor.getDocument().getImmutableCharSequence(), offset);
+    }
+
+    /**
+     * 按已定位到光标前一个字符的高亮迭代器判断，不依赖编辑器，基准可直接驱动
+     */
+    static Category classify(HighlighterIterator iterator, CharSequence text, int offset) {
+        if (iterator.atEnd() || iterator.getTokenType() == null) {
+            return Category.CODE;
+        }
+        IElementType type = iterator.getTokenType();
+        Category category = CATEGORY_CACHE.computeIfAbsent(type, TokenContextClassifier::categorize);
+        if (offset < iterator.getEnd()) {
+            return category;
+        }
+        // 光标紧跟在字符串结束引号之后时已经离开字符串
+        if (category == Category.STRING) {
+            return Category.CODE;
+        }
+        if (category == Category.COMMENT && !continuesComment(text, iterator.getStart(), offset, type.getLanguage())) {
+            return Category.CODE;
+        }
+        return category;
+    }
+
+    /**
+     * 光标位于注释 token 末尾时是否仍在注释中
+     * <p>
+     * 行注释一直延续到行尾；块注释只有光标前是结束符时才算离开，文档注释被拆成多个 token，
+     * 中间 token 的末尾仍在注释里。语言没有注册 Commenter 时无法区分，一律按离开处理。
+     */
+    private static boolean continuesComment(CharSequence text, int start, int offset, Language language) {
+        CommentSyntax syntax = COMMENT_SYNTAX_CACHE.computeIfAbsent(language, TokenContextClassifier::commentSyntax);
+        if (syntax == CommentSyntax.UNKNOWN) {
+            return false;
+        }
+        if (!syntax.linePrefix().isEmpty() && CharArrayUtil.regionMatches(text, start, syntax.linePrefix())) {
+            return true;
+        }
+        String suffix = syntax.blockSuffix();
+        return suffix.isEmpty() || !CharArrayUtil.regionMatches(text, offset - suffix.length(), suffix);
+    }
+
+    private static CommentSyntax commentSyntax(Language language) {
+        Commenter commenter = LanguageCommenters.INSTANCE.forLanguage(language);
+        if (commenter == null) {
+            return CommentSyntax.UNKNOWN;
+        }
+        return new CommentSyntax(trimToEmpty(commenter.getLineCommentPrefix()), trimToEmpty(commenter.getBlockCommentSuffix()));
+    }
+
+    /**
+     * 预先登记 token 类型和语言的注释语法，供没有启动 IDE 的基准使用
+     */
+    @TestOnly
+    static void prime(IElementType type, Category category, String linePrefix, String blockSuffix) {
+        CATEGORY_CACHE.put(type, category);
+        COMMENT_SYNTAX_CACHE.put(type.getLanguage(), new CommentSyntax(linePrefix, blockSuffix));
+    }
+
+    private static String trimToEmpty(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    private record CommentSyntax(String linePrefix, String blockSuffix) {
+        static final CommentSyntax UNKNOWN = new CommentSyntax("", "");
+    }
+
+    private static Category categorize(IElementType type) {
+        ParserDefinition definition = LanguageParserDefinitions.INSTANCE.forLanguage(type.getLanguage());
+        if (definition != null) {
+            if (definition.getCommentTokens().contains(type)) {
+                return Category.COMMENT;
+            }
+            if (definition.getStringLiteralElements().contains(type)) {
+                return Category.STRING;
+            }
+        }
+        // 文档注释等没有登记在 ParserDefinition 中的 token 按名称判断
+        String name = type.toString().toUpperCase(Locale.ROOT);
+        if (name.contains("COMMENT")) {
+            return Category.COMMENT;
+        }
+        if (name.contains("STRING")) {
+            return Category.STRING;
+        }
+        return Category.CODE;
+    }
+}
@@ -0,0 +1,58 @@
+package editoraction;
+
+import java.util.Arrays;
+
+/**
+ * 判断语境时跳过的“透明”字符集合（空白、数字、常见标点等）
+ * <p>
+ * ASCII 字符用两个 long 位图判断，其余码点二分查找，判断过程不分配对象。
+ */
+public final class TransparentChars {
+    private static volatile TransparentChars lastParsed = new TransparentChars("");
+
+    private final String source;
+    private final long low;
+    private final long high;
+    private final int[] others;
+
+    private TransparentChars(String source) {
+        this.source = source;
+        long lowBits = 0;
+        long highBits = 0;
+        int[] nonAscii = source.codePoints().filter(cp -> cp >= 128).distinct().sorted().toArray();
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c < 64) {
+                lowBits |= 1L << c;
+            } else if (c < 128) {
+                highBits |= 1L << (c - 64);
+            }
+        }
+        this.low = lowBits;
+        this.high = highBits;
+        this.others = nonAscii;
+    }
+
+    /**
+     * 解析配置字符串，配置未变化时复用上次的结果
+     */
+    public static TransparentChars of(String chars) {
+        String source = chars == null ? "" : chars;
+        TransparentChars parsed = lastParsed;
+        if (!parsed.source.equals(source)) {
+            parsed = new TransparentChars(source);
+            lastParsed = parsed;
+        }
+        return parsed;
+    }
+
+    public boolean contains(int codePoint) {
+        if (codePoint < 64) {
+            return (low & (1L << codePoint)) != 0;
+        }
+        if (codePoint < 128) {
+            return (high & (1L << (codePoint - 64))) != 0;
+        }
+        return others.length > 0 && Arrays.binarySearch(others, codePoint) >= 0;
+    }
+}
@@ -0,0 +1,12 @@
+package enums;
+
+public enum MultiCaretPolicy {
+    PRIMARY("按主光标判断"),
+    MAJORITY("按多数光标判断");
+
+    public final String name;
+
+    MultiCaretPolicy(String name) {
+        this.name = name;
+    }
+}
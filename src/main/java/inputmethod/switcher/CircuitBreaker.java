@@ -0,0 +1,88 @@
+package inputmethod.switcher;
+
+import utlis.LogUtil;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 切换引擎的熔断器
+ * <p>
+ * 失败后进入 OPEN，在退避时间内直接拒绝调用；到期后进入 HALF_OPEN 放行一次试探，成功则恢复 CLOSED，
+ * 失败则退避时间翻倍重新 OPEN。退避基数由调用方按错误类型给出。
+ */
+public class CircuitBreaker {
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final LongSupplier nanoClock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    // 健康度 0~100，按最近结果指数加权
+    private double health = 100;
+
+    public CircuitBreaker(String name) {
+        this(name, System::nanoTime);
+    }
+
+    // 测试用：注入时钟以推进退避时间
+    CircuitBreaker(String name, LongSupplier nanoClock) {
+        this.name = name;
+        this.nanoClock = nanoClock;
+        SwitchDiagnostics.register(this);
+    }
+
+    /**
+     * 是否允许本次调用。OPEN 到期时转为 HALF_OPEN 并放行一次
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openUntilNanos >= 0) {
+            transition(State.HALF_OPEN);
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        health = health * 0.8 + 20;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * @param baseBackoffMs 首次失败的退避时间，连续失败时翻倍，最长 {@value #MAX_BACKOFF_MS} ms
+     */
+    public synchronized void onFailure(long baseBackoffMs) {
+        consecutiveFailures++;
+        health = health * 0.8;
+        long backoffMs = Math.min(MAX_BACKOFF_MS, baseBackoffMs << Math.min(consecutiveFailures - 1, 16));
+        openUntilNanos = nanoClock.getAsLong() + backoffMs * 1_000_000;
+        LogUtil.info(name + " 熔断 " + backoffMs + "ms, 连续失败 " + consecutiveFailures + " 次");
+        transition(State.OPEN);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized int health() {
+        return (int) Math.round(health);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private void transition(State newState) {
+        if (state != newState) {
+            LogUtil.debug(name + " 熔断器: " + state + " -> " + newState);
+            state = newState;
+        }
+    }
+}
@@ -3,6 +3,38 @@ package inputmethod.switcher;
 import enums.InputState;
 
 public interface InputMethodSwitchStrategy {
-    void change();
+    /**
+     * 翻转当前状态
+     *
+     * @return 切换操作是否成功发出；失败时策略内部同时使状态缓存失效
+     */
+    boolean change();
     InputState getCurrentMode();
+
+    /**
+     * 预热：加载原生库、建立缓存，使首次切换与稳定状态耗时一致。在切换线程上调用
+     */
+    default void warmUp() {
+    }
+
+    /**
+     * 切换到指定状态。默认实现直接翻转，能按目标状态设置的策略应覆盖此方法
+     *
+     * @return 切换是否成功；失败时策略内部同时使状态缓存失效
+     */
+    default boolean switchTo(InputState target) {
+        return change();
+    }
+
+    /**
+     * 任务栏重建或显示设置变化后在切换线程上调用，丢弃并重建与托盘相关的缓存
+     */
+    default void onTrayChanged() {
+    }
+
+    /**
+     * 插件卸载或 IDE 退出时在切换线程上调用，释放策略持有的原生资源
+     */
+    default void dispose() {
+    }
 }
@@ -2,7 +2,11 @@ package inputmethod.switcher;
 
 import enums.InputState;
 import state.SettingsState;
+import utlis.LogUtil;
 
+/**
+ * 以下方法都会触发原生调用，只应在切换线程（{@link SwitchExecutorService}）上调用
+ */
 public class InputMethodSwitcher {
     // 私有构造防止实例化
     private InputMethodSwitcher() {
@@ -17,4 +21,30 @@ public class InputMethodSwitcher {
         SettingsState settingsState = SettingsState.getInstance();
         SwitcherStrategyFactory.createStrategy(settingsState.inputSwitchStrategyClass).change();
     }
-}
\ No newline at end of file
+
+    private static boolean change(InputState target) {
+        SettingsState settingsState = SettingsState.getInstance();
+        return SwitcherStrategyFactory.createStrategy(settingsState.inputSwitchStrategyClass).switchTo(target);
+    }
+
+    /**
+     * 当前状态与期望状态不一致时切换
+     *
+     * @return 是否触发了切换并且切换成功
+     */
+    public static boolean switchTo(InputState state) {
+        InputState currentMode = InputStateCache.getOrLoad(InputMethodSwitcher::getCurrentMode);
+        LogUtil.debug("当前输入法状态：" + currentMode);
+        if (state.equals(currentMode)) {
+            return false;
+        }
+        LogUtil.info(" 触发输入法切换");
+        // 先写缓存，切换失败时缓存失效，下次重新查询实际状态
+        InputStateCache.update(state);
+        if (!change(state)) {
+            InputStateCache.invalidate("切换失败");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package inputmethod.switcher;
+
+import enums.InputState;
+import utlis.LogUtil;
+
+import java.util.function.Supplier;
+
+/**
+ * 应用级输入法状态缓存
+ * <p>
+ * 插件自己发起的切换会直接更新缓存；IDE 窗口重新激活、焦点离开编辑器、用户手动切换输入法时缓存失效，
+ * 只有缓存失效时才去查询系统的实际状态。查询期间缓存又被失效或更新时，查询结果已经过时，不再写入缓存。
+ */
+public class InputStateCache {
+    // null 表示缓存已失效
+    private static volatile InputState cached;
+    // 每次失效或更新加一，只在持有类锁时修改
+    private static int generation;
+
+    // 私有构造防止实例化
+    private InputStateCache() {
+    }
+
+    /**
+     * 缓存有效时直接返回，否则调用 loader 查询并写入缓存
+     */
+    public static InputState getOrLoad(Supplier<InputState> loader) {
+        InputState state = cached;
+        if (state != null) {
+            return state;
+        }
+        int started = generation();
+        state = loader.get();
+        if (state != InputState.NONE) {
+            synchronized (InputStateCache.class) {
+                if (generation == started) {
+                    cached = state;
+                } else {
+                    LogUtil.debug("查询期间输入法状态缓存已变化，丢弃查询结果：" + state);
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 当前缓存的状态，已失效时返回 null，不触发查询
+     */
+    public static InputState peek() {
+        return cached;
+    }
+
+    public static synchronized void update(InputState state) {
+        generation++;
+        cached = state;
+    }
+
+    public static synchronized void invalidate(String reason) {
+        generation++;
+        if (cached != null) {
+            LogUtil.debug("输入法状态缓存失效：" + reason);
+            cached = null;
+        }
+    }
+
+    private static synchronized int generation() {
+        return generation;
+    }
+}
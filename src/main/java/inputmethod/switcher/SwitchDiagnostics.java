@@ -0,0 +1,54 @@
+package inputmethod.switcher;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 切换引擎的运行时诊断计数
+ */
+public class SwitchDiagnostics {
+    // 插件持有、尚未 Release 的 COM 引用数
+    private static final AtomicInteger LIVE_COM_REFS = new AtomicInteger();
+    private static final List<CircuitBreaker> BREAKERS = new CopyOnWriteArrayList<>();
+    // 超过截止时间、等查询完成后再重新投递的查询次数
+    private static final AtomicLong QUERY_TIMEOUTS = new AtomicLong();
+
+    // 私有构造防止实例化
+    private SwitchDiagnostics() {
+    }
+
+    public static void comRefAcquired() {
+        LIVE_COM_REFS.incrementAndGet();
+    }
+
+    public static void comRefReleased() {
+        LIVE_COM_REFS.decrementAndGet();
+    }
+
+    public static int liveComRefs() {
+        return LIVE_COM_REFS.get();
+    }
+
+    public static void queryTimedOut() {
+        QUERY_TIMEOUTS.incrementAndGet();
+    }
+
+    public static long queryTimeouts() {
+        return QUERY_TIMEOUTS.get();
+    }
+
+    static void register(CircuitBreaker breaker) {
+        BREAKERS.add(breaker);
+    }
+
+    public static String summary() {
+        StringJoiner breakers = new StringJoiner(",", "[", "]");
+        for (CircuitBreaker breaker : BREAKERS) {
+            breakers.add(breaker.name() + ":" + breaker.state() + "/" + breaker.health());
+        }
+        return "liveComRefs=" + liveComRefs() + " queryTimeouts=" + queryTimeouts() + " breakers=" + breakers;
+    }
+}
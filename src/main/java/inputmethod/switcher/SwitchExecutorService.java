@@ -0,0 +1,274 @@
+package inputmethod.switcher;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import enums.InputState;
+import inputmethod.switcher.impl.tray.TrayEventSource;
+import inputmethod.switcher.impl.tray.Win32TrayEventSource;
+import state.SettingsState;
+import utlis.LogUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 输入法切换线程
+ * <p>
+ * 所有原生调用（UIAutomation/COM、imm32、user32）都只在这一条长期存活的线程上执行，
+ * 切换策略内部的缓存字段因此是线程封闭的。EDT 只投递“期望状态”，尚未执行的命令会被合并，只执行最新的一条。
+ * <p>
+ * 合并后的命令由单独的调度线程处理：缓存有效且已是目标状态时直接跳过；否则查询有截止时间，
+ * 超时后命令不排在卡住的查询后面，而是等查询完成后，仍是最新命令时才重新投递。
+ */
+@Service(Service.Level.APP)
+public final class SwitchExecutorService implements Disposable {
+    private static final String THREAD_NAME = "key-switch-worker";
+    private static final String DISPATCH_THREAD_NAME = "key-switch-dispatch";
+    // 新任务栏上的输入法指示器会晚于 TaskbarCreated 出现，延迟后再重建缓存
+    private static final long TRAY_REBUILD_DELAY_MS = 1500;
+    // 退出时等待切换线程释放 COM 对象的上限
+    private static final long DISPOSE_TIMEOUT_MS = 500;
+    // 运行期间定期输出诊断计数（debug 级别）的间隔
+    private static final long DIAGNOSTICS_INTERVAL_MINUTES = 10;
+
+    private final ExecutorService worker = newThread(THREAD_NAME);
+    private final ExecutorService dispatcher = newThread(DISPATCH_THREAD_NAME);
+    private final AtomicReference<SwitchCommand> pending = new AtomicReference<>();
+    // 最近一次投递的命令，查询超时后只重新投递它
+    private final AtomicReference<SwitchCommand> latest = new AtomicReference<>();
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+    // 尚未完成的状态查询，只在调度线程上读写
+    private CompletableFuture<InputState> refresh;
+    private volatile TrayEventSource trayEvents;
+    private volatile ScheduledFuture<?> diagnosticsReport;
+    // 托盘变化后要重建缓存的策略，以及重建前的延迟
+    private final Supplier<InputMethodSwitchStrategy> currentStrategy;
+    private final long trayRebuildDelayMs;
+
+    public SwitchExecutorService() {
+        this(() -> SwitcherStrategyFactory.createStrategy(SettingsState.getInstance().inputSwitchStrategyClass),
+                TRAY_REBUILD_DELAY_MS);
+    }
+
+    // 测试用：替换当前策略和托盘重建延迟
+    SwitchExecutorService(Supplier<InputMethodSwitchStrategy> currentStrategy, long trayRebuildDelayMs) {
+        this.currentStrategy = currentStrategy;
+        this.trayRebuildDelayMs = trayRebuildDelayMs;
+    }
+
+    public static SwitchExecutorService getInstance() {
+        return ApplicationManager.getApplication().getService(SwitchExecutorService.class);
+    }
+
+    public static boolean isWorkerThread() {
+        return THREAD_NAME.equals(Thread.currentThread().getName());
+    }
+
+    /**
+     * 投递期望的输入法状态，队列中未执行的旧命令会被覆盖
+     *
+     * @param target     期望状态
+     * @param onSwitched 实际发生切换后在切换线程回调
+     */
+    public void submit(InputState target, Consumer<InputState> onSwitched) {
+        SwitchCommand command = new SwitchCommand(target, onSwitched);
+        latest.set(command);
+        if (pending.getAndSet(command) == null) {
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (dispatcher.isShutdown()) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            try {
+                drain();
+            } catch (Exception e) {
+                LogUtil.warn("切换调度失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 在切换线程上执行一次性任务（不参与合并）
+     */
+    public void execute(Runnable task) {
+        if (worker.isShutdown()) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LogUtil.warn("切换线程任务执行失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 在切换线程上异步预热当前切换策略，每个应用生命周期只执行一次
+     */
+    public void warmUp() {
+        if (!SystemInfo.isWindows || !warmedUp.compareAndSet(false, true)) {
+            return;
+        }
+        watchTray(new Win32TrayEventSource());
+        diagnosticsReport = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                () -> LogUtil.debug("key-switch diagnostics: " + SwitchDiagnostics.summary()),
+                DIAGNOSTICS_INTERVAL_MINUTES, DIAGNOSTICS_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        execute(() -> {
+            String strategy = SettingsState.getInstance().inputSwitchStrategyClass;
+            long startTime = System.nanoTime();
+            String status = "ok";
+            try {
+                SwitcherStrategyFactory.createStrategy(strategy).warmUp();
+            } catch (Exception e) {
+                status = "failed(" + e.getClass().getSimpleName() + ")";
+            } finally {
+                double durationMs = (System.nanoTime() - startTime) / 1e6;
+                LogUtil.info("key-switch warmup: strategy=" + strategy + " status=" + status
+                        + " durationMs=" + String.format("%.3f", durationMs)
+                        + " " + SwitchDiagnostics.summary());
+            }
+        });
+    }
+
+    /**
+     * 监听任务栏重建和显示设置变化，发生时让状态缓存失效并在切换线程上重建托盘缓存
+     */
+    public void watchTray(TrayEventSource source) {
+        TrayEventSource previous = trayEvents;
+        if (previous != null) {
+            previous.close();
+        }
+        trayEvents = source;
+        source.start(new TrayEventSource.Listener() {
+            @Override
+            public void onTaskbarCreated() {
+                onTrayChanged("任务栏重建");
+            }
+
+            @Override
+            public void onDisplayChanged() {
+                onTrayChanged("显示设置变化");
+            }
+        });
+    }
+
+    private void onTrayChanged(String reason) {
+        InputStateCache.invalidate(reason);
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                () -> execute(() -> currentStrategy.get().onTrayChanged()), trayRebuildDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() throws InterruptedException, ExecutionException {
+        SwitchCommand command = pending.getAndSet(null);
+        if (command == null) {
+            return;
+        }
+        InputState current = queryCurrentMode();
+        if (current == null) {
+            requeueAfterRefresh(command);
+            return;
+        }
+        // 确认已经是目标状态时不再排队等切换线程
+        if (command.target().equals(current)) {
+            return;
+        }
+        // 切换线程上会按刷新后的缓存重新判断，避免按过期状态翻转
+        Future<Boolean> switched = worker.submit(() -> InputMethodSwitcher.switchTo(command.target()));
+        if (switched.get()) {
+            command.onSwitched().accept(command.target());
+        }
+    }
+
+    /**
+     * 查询超时的命令不排在卡住的查询后面；查询成功完成后，若期间没有更新的命令，再重新投递
+     */
+    private void requeueAfterRefresh(SwitchCommand command) {
+        refresh.whenComplete((state, error) -> {
+            if (error == null && latest.get() == command && pending.compareAndSet(null, command)) {
+                scheduleDrain();
+            }
+        });
+    }
+
+    /**
+     * 在截止时间内查询当前状态，超时返回 null，查询继续在切换线程上完成并写入缓存
+     * <p>
+     * 失效前的状态不能作为依据：用户手动切换后缓存失效，旧状态恰好等于目标时会漏掉切换
+     */
+    private InputState queryCurrentMode() throws InterruptedException, ExecutionException {
+        InputState cached = InputStateCache.peek();
+        if (cached != null) {
+            return cached;
+        }
+        if (refresh == null || refresh.isDone()) {
+            refresh = CompletableFuture.supplyAsync(
+                    () -> InputStateCache.getOrLoad(InputMethodSwitcher::getCurrentMode), worker);
+        }
+        try {
+            return refresh.get(SettingsState.getInstance().queryDeadlineMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            SwitchDiagnostics.queryTimedOut();
+            LogUtil.debug("状态查询超时，查询完成后再处理最新命令");
+            return null;
+        }
+    }
+
+    private static ExecutorService newThread(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void dispose() {
+        pending.set(null);
+        latest.set(null);
+        TrayEventSource source = trayEvents;
+        if (source != null) {
+            source.close();
+        }
+        ScheduledFuture<?> report = diagnosticsReport;
+        if (report != null) {
+            report.cancel(false);
+        }
+        dispatcher.shutdownNow();
+        if (!worker.isShutdown()) {
+            // COM 对象只能在创建它们的切换线程上释放；切换线程卡在原生调用里时不再等待
+            Future<?> released = worker.submit(SwitcherStrategyFactory::disposeAll);
+            worker.shutdown();
+            try {
+                released.get(DISPOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                LogUtil.warn("切换策略释放未完成: " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        worker.shutdownNow();
+        // 释放之后输出，liveComRefs 不为 0 说明有 COM 引用泄漏
+        LogUtil.info("key-switch dispose: " + SwitchDiagnostics.summary());
+    }
+
+    private record SwitchCommand(InputState target, Consumer<InputState> onSwitched) {
+    }
+}
@@ -7,6 +7,8 @@ import java.util.function.Supplier;
 
 import inputmethod.cursor.impl.BalloonHandle;
 import inputmethod.cursor.impl.CursorColorHandle;
+import inputmethod.switcher.impl.AutoSwitcher;
+import inputmethod.switcher.impl.ImeControlSwitcher;
 import inputmethod.switcher.impl.KeyboardSwitcher;
 import inputmethod.switcher.impl.WindowsUIAutomationSwitcher;
 import utlis.LogUtil;
@@ -14,7 +16,9 @@ import utlis.LogUtil;
 public class SwitcherStrategyFactory {
     private static final Map<String, Supplier<InputMethodSwitchStrategy>> STRATEGIES =       Map.of(
             "KeyboardSwitcher", KeyboardSwitcher::new,
-            "UIAutomationSwitcher", WindowsUIAutomationSwitcher::new
+            "UIAutomationSwitcher", WindowsUIAutomationSwitcher::new,
+            "ImeControlSwitcher", ImeControlSwitcher::new,
+            "AutoSwitcher", AutoSwitcher::new
     );
     private static final Map<String, InputMethodSwitchStrategy> STRATEGY_CACHE = new ConcurrentHashMap<>();
 
@@ -30,4 +34,18 @@ public class SwitcherStrategyFactory {
             return instance;
         });
     }
+
+    /**
+     * 释放所有已创建策略的原生资源并清空缓存，在切换线程上调用
+     */
+    public static void disposeAll() {
+        for (InputMethodSwitchStrategy strategy : STRATEGY_CACHE.values()) {
+            try {
+                strategy.dispose();
+            } catch (Exception e) {
+                LogUtil.warn("策略释放失败: " + strategy.getClass().getSimpleName() + " " + e.getMessage());
+            }
+        }
+        STRATEGY_CACHE.clear();
+    }
 }
\ No newline at end of file
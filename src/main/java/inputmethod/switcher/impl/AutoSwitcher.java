@@ -0,0 +1,296 @@
+package inputmethod.switcher.impl;
+
+import com.intellij.openapi.wm.IdeFrame;
+import enums.InputState;
+import inputmethod.switcher.InputMethodSwitchStrategy;
+import inputmethod.switcher.InputStateCache;
+import inputmethod.switcher.SwitchExecutorService;
+import inputmethod.switcher.SwitcherStrategyFactory;
+import inputmethod.switcher.impl.auto.EngineStats;
+import inputmethod.switcher.impl.auto.EngineStats.Summary;
+import state.SwitcherCacheState;
+import utlis.LogUtil;
+
+import java.awt.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自动选择切换引擎
+ * <p>
+ * 首次预热时对每个引擎实际切换一个来回并回读校验，按成功率和 p50/p99 耗时排名；IDE 窗口未激活时
+ * 切换作用不到 IDE 窗口，校准推迟到 IDE 窗口激活后。运行中按排名依次尝试，引擎报告失败或抛异常时
+ * 转到下一个引擎。排名随运行样本持续更新并跨会话保存，每隔一段时间把一次切换交给第二名试跑，
+ * 让被降级的引擎有机会恢复。
+ */
+public class AutoSwitcher implements InputMethodSwitchStrategy {
+    private static final List<String> ENGINES = List.of(
+            "UIAutomationSwitcher", "KeyboardSwitcher", "ImeControlSwitcher");
+    private static final long REEVALUATE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    // 校准时等待状态生效的上限和轮询间隔
+    private static final long VERIFY_TIMEOUT_MS = 100;
+    private static final long VERIFY_POLL_MS = 5;
+    // 大于 KeyboardSwitcher 的去抖间隔，避免校准时的第二次切换被跳过
+    private static final long CALIBRATION_GAP_MS = 150;
+    private static final String ACTIVE_WINDOW_PROPERTY = "activeWindow";
+
+    // 以下字段只在切换线程上读写
+    private final Map<String, EngineStats> stats = new LinkedHashMap<>();
+    private List<String> ranking;
+    private boolean calibrated;
+    private long lastReevaluate = System.nanoTime();
+    // 下一次重新评估试跑的名次，在第二名到最后一名之间轮换
+    private int nextTrial = 1;
+    // 等待 IDE 窗口激活后再校准的监听器
+    private PropertyChangeListener deferredCalibration;
+
+    @Override
+    public void warmUp() {
+        List<String> order = ranking();
+        for (String name : order) {
+            try {
+                engine(name).warmUp();
+            } catch (Exception e) {
+                LogUtil.warn("引擎预热失败: " + name + " " + e.getMessage());
+            }
+        }
+        if (!calibrated) {
+            calibrateOrDefer();
+        }
+        LogUtil.info("AutoSwitcher ranking: " + formatRanking());
+    }
+
+    private void calibrateOrDefer() {
+        if (!ideFrameActive()) {
+            deferCalibration();
+            return;
+        }
+        for (String name : ranking()) {
+            calibrate(name);
+        }
+        calibrated = true;
+        // 校准过程切换过输入法，缓存中的状态不可信
+        InputStateCache.invalidate("自动策略校准");
+        rerank();
+    }
+
+    // 激活窗口的监听在 EDT 上回调，校准仍回到切换线程执行
+    private void deferCalibration() {
+        if (deferredCalibration != null) {
+            return;
+        }
+        LogUtil.info("AutoSwitcher IDE 窗口未激活，推迟校准");
+        KeyboardFocusManager manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+        PropertyChangeListener listener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent event) {
+                if (!(event.getNewValue() instanceof IdeFrame)) {
+                    return;
+                }
+                manager.removePropertyChangeListener(ACTIVE_WINDOW_PROPERTY, this);
+                SwitchExecutorService.getInstance().execute(() -> {
+                    deferredCalibration = null;
+                    if (!calibrated) {
+                        calibrateOrDefer();
+                        LogUtil.info("AutoSwitcher ranking: " + formatRanking());
+                    }
+                });
+            }
+        };
+        deferredCalibration = listener;
+        manager.addPropertyChangeListener(ACTIVE_WINDOW_PROPERTY, listener);
+    }
+
+    private static boolean ideFrameActive() {
+        return KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow() instanceof IdeFrame;
+    }
+
+    @Override
+    public void onTrayChanged() {
+        for (String name : ranking()) {
+            engine(name).onTrayChanged();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        // 各引擎由 SwitcherStrategyFactory 统一释放，这里只撤掉尚未触发的校准监听
+        if (deferredCalibration != null) {
+            KeyboardFocusManager.getCurrentKeyboardFocusManager()
+                    .removePropertyChangeListener(ACTIVE_WINDOW_PROPERTY, deferredCalibration);
+            deferredCalibration = null;
+        }
+    }
+
+    @Override
+    public InputState getCurrentMode() {
+        for (String name : ranking()) {
+            InputState state = readState(name);
+            if (state != InputState.NONE) {
+                return state;
+            }
+        }
+        return InputState.NONE;
+    }
+
+    @Override
+    public boolean change() {
+        return switchTo(getCurrentMode() == InputState.CHINESE ? InputState.ENGLISH : InputState.CHINESE);
+    }
+
+    @Override
+    public boolean switchTo(InputState target) {
+        List<String> candidates = new ArrayList<>(ranking());
+        if (candidates.size() > 1 && System.nanoTime() - lastReevaluate > REEVALUATE_INTERVAL_NANOS) {
+            lastReevaluate = System.nanoTime();
+            // 排名靠后的引擎轮流先试跑一次，失败后仍按排名回退
+            int trial = nextTrial < candidates.size() ? nextTrial : 1;
+            nextTrial = trial + 1 < candidates.size() ? trial + 1 : 1;
+            candidates.add(0, candidates.remove(trial));
+            LogUtil.info("AutoSwitcher 重新评估: " + candidates.get(0));
+        }
+
+        boolean first = true;
+        for (String name : candidates) {
+            // 前一个引擎失败后实际状态未知，翻转型引擎需要先确认，避免切反
+            if (!first && readState(name) == target) {
+                InputStateCache.update(target);
+                rerank();
+                return true;
+            }
+            first = false;
+
+            InputStateCache.update(target);
+            long startTime = System.nanoTime();
+            boolean ok = runSwitch(name, target);
+            stats(name).record(System.nanoTime() - startTime, ok);
+            if (ok) {
+                rerank();
+                return true;
+            }
+            LogUtil.warn("引擎切换失败，尝试下一个: " + name);
+        }
+        InputStateCache.invalidate("所有引擎切换失败");
+        rerank();
+        return false;
+    }
+
+    private void calibrate(String name) {
+        InputState original = readState(name);
+        if (original == InputState.NONE) {
+            stats(name).record(0, false);
+            stats(name).record(0, false);
+            return;
+        }
+        InputState other = original == InputState.CHINESE ? InputState.ENGLISH : InputState.CHINESE;
+        for (InputState target : new InputState[]{other, original}) {
+            long startTime = System.nanoTime();
+            boolean ok = runSwitch(name, target);
+            long latency = System.nanoTime() - startTime;
+            ok = ok && awaitState(name, target);
+            stats(name).record(latency, ok);
+            LogUtil.info("AutoSwitcher 校准: " + name + " -> " + target + " ok=" + ok
+                    + " durationMs=" + String.format("%.3f", latency / 1e6));
+            sleep(CALIBRATION_GAP_MS);
+            if (!ok) {
+                return;
+            }
+        }
+    }
+
+    private boolean awaitState(String name, InputState target) {
+        long deadline = System.currentTimeMillis() + VERIFY_TIMEOUT_MS;
+        while (true) {
+            if (readState(name) == target) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            sleep(VERIFY_POLL_MS);
+        }
+    }
+
+    private boolean runSwitch(String name, InputState target) {
+        try {
+            return engine(name).switchTo(target);
+        } catch (Exception e) {
+            LogUtil.warn("引擎切换异常: " + name + " " + e.getMessage());
+            return false;
+        }
+    }
+
+    private InputState readState(String name) {
+        try {
+            return engine(name).getCurrentMode();
+        } catch (Exception e) {
+            LogUtil.warn("引擎查询异常: " + name + " " + e.getMessage());
+            return InputState.NONE;
+        }
+    }
+
+    private List<String> ranking() {
+        if (ranking == null) {
+            // 加载上次会话保存的排名，未出现的引擎按默认顺序追加在后面
+            List<String> order = new ArrayList<>();
+            String saved = SwitcherCacheState.getInstance().autoSwitcherRanking;
+            if (saved != null && !saved.isEmpty()) {
+                for (String entry : saved.split(",")) {
+                    String[] pair = entry.split("=", 2);
+                    if (pair.length == 2 && ENGINES.contains(pair[0]) && !order.contains(pair[0])) {
+                        order.add(pair[0]);
+                        stats(pair[0]).setPrior(Summary.parse(pair[1]));
+                    }
+                }
+            }
+            calibrated = order.size() == ENGINES.size();
+            for (String name : ENGINES) {
+                if (!order.contains(name)) {
+                    order.add(name);
+                }
+            }
+            ranking = order;
+        }
+        return ranking;
+    }
+
+    private void rerank() {
+        List<String> order = new ArrayList<>(ranking());
+        order.sort((a, b) -> EngineStats.RANKING.compare(stats(a).summary(), stats(b).summary()));
+        if (!order.equals(ranking)) {
+            LogUtil.info("AutoSwitcher 排名变化: " + ranking + " -> " + order);
+        }
+        ranking = order;
+        SwitcherCacheState.getInstance().autoSwitcherRanking = formatRanking();
+    }
+
+    private String formatRanking() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (String name : ranking()) {
+            joiner.add(name + "=" + stats(name).summary().format());
+        }
+        return joiner.toString();
+    }
+
+    private EngineStats stats(String name) {
+        return stats.computeIfAbsent(name, key -> new EngineStats());
+    }
+
+    private static InputMethodSwitchStrategy engine(String name) {
+        return SwitcherStrategyFactory.createStrategy(name);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
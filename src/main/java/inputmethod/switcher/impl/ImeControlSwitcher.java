@@ -0,0 +1,91 @@
+package inputmethod.switcher.impl;
+
+import enums.InputState;
+import inputmethod.switcher.InputMethodSwitchStrategy;
+import inputmethod.switcher.InputStateCache;
+import inputmethod.switcher.impl.ime.ImeWindowApi;
+import inputmethod.switcher.impl.ime.NativeImeWindowApi;
+import utlis.LogUtil;
+
+import static inputmethod.switcher.impl.ime.ImeWindowApi.IMC_GETCONVERSIONMODE;
+import static inputmethod.switcher.impl.ime.ImeWindowApi.IMC_GETOPENSTATUS;
+import static inputmethod.switcher.impl.ime.ImeWindowApi.IMC_SETCONVERSIONMODE;
+import static inputmethod.switcher.impl.ime.ImeWindowApi.IMC_SETOPENSTATUS;
+import static inputmethod.switcher.impl.ime.ImeWindowApi.IME_CMODE_NATIVE;
+
+/**
+ * 通过 WM_IME_CONTROL 直接设置输入法的打开状态和转换模式
+ * <p>
+ * 不模拟按键、不点击托盘，按目标状态直接设置而不是翻转。部分输入法（如 Win11 微软拼音的部分版本）
+ * 会忽略这些消息，因此设置后会回读校验，未生效时使状态缓存失效，下次切换重新查询实际状态。
+ */
+public class ImeControlSwitcher implements InputMethodSwitchStrategy {
+    private final ImeWindowApi api;
+
+    public ImeControlSwitcher() {
+        this(new NativeImeWindowApi());
+    }
+
+    public ImeControlSwitcher(ImeWindowApi api) {
+        this.api = api;
+    }
+
+    @Override
+    public void warmUp() {
+        api.defaultImeWindow();
+    }
+
+    @Override
+    public InputState getCurrentMode() {
+        long imeWindow = api.defaultImeWindow();
+        if (imeWindow == 0) {
+            // 英文输入法可能没有 IME 窗口
+            return InputState.ENGLISH;
+        }
+        return readMode(imeWindow);
+    }
+
+    @Override
+    public boolean change() {
+        return switchTo(getCurrentMode() == InputState.CHINESE ? InputState.ENGLISH : InputState.CHINESE);
+    }
+
+    @Override
+    public boolean switchTo(InputState target) {
+        if (target == InputState.NONE) {
+            return false;
+        }
+        long imeWindow = api.defaultImeWindow();
+        if (imeWindow == 0) {
+            LogUtil.info("未找到输入法窗口");
+            InputStateCache.invalidate("IME 窗口不存在");
+            return false;
+        }
+
+        boolean chinese = target == InputState.CHINESE;
+        if (chinese && api.sendImeControl(imeWindow, IMC_GETOPENSTATUS, 0) == 0) {
+            api.sendImeControl(imeWindow, IMC_SETOPENSTATUS, 1);
+        }
+        long mode = api.sendImeControl(imeWindow, IMC_GETCONVERSIONMODE, 0);
+        long newMode = chinese ? mode | IME_CMODE_NATIVE : mode & ~IME_CMODE_NATIVE;
+        if (newMode != mode) {
+            api.sendImeControl(imeWindow, IMC_SETCONVERSIONMODE, newMode);
+        }
+
+        InputState actual = readMode(imeWindow);
+        if (actual != target) {
+            LogUtil.warn("IME 控制消息未生效: target=" + target + " actual=" + actual);
+            InputStateCache.invalidate("IME 控制消息未生效");
+            return false;
+        }
+        return true;
+    }
+
+    private InputState readMode(long imeWindow) {
+        if (api.sendImeControl(imeWindow, IMC_GETOPENSTATUS, 0) == 0) {
+            return InputState.ENGLISH;
+        }
+        long mode = api.sendImeControl(imeWindow, IMC_GETCONVERSIONMODE, 0);
+        return (mode & IME_CMODE_NATIVE) != 0 ? InputState.CHINESE : InputState.ENGLISH;
+    }
+}
@@ -0,0 +1,40 @@
+package inputmethod.switcher.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录插件自己注入、尚未被 IDE 收到的 Shift 事件
+ * <p>
+ * SendInput 时会在 dwExtraInfo 中打上标记，但 AWT 的 KeyEvent 拿不到这个字段，
+ * 因此 IDE 侧按“待收事件数 + 时间窗口”识别：注入后窗口期内收到的 Shift 按下/释放依次抵扣待收数。
+ */
+public class InjectedKeyTracker {
+    // 注入的事件超过这个时间还没到达 EDT 就不再等待，避免吞掉用户真实的 Shift
+    private static final long EXPECT_WINDOW_NANOS = 200_000_000L;
+
+    private static final AtomicInteger PENDING = new AtomicInteger();
+    private static volatile long deadline;
+
+    // 私有构造防止实例化
+    private InjectedKeyTracker() {
+    }
+
+    /**
+     * 注入前登记即将到达的事件数，在切换线程上调用
+     */
+    public static void expect(int events) {
+        deadline = System.nanoTime() + EXPECT_WINDOW_NANOS;
+        PENDING.set(events);
+    }
+
+    /**
+     * 收到一个 Shift 事件时调用，属于插件注入的事件时返回 true，在 EDT 上调用
+     */
+    public static boolean consume() {
+        if (System.nanoTime() - deadline > 0) {
+            PENDING.set(0);
+            return false;
+        }
+        return PENDING.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+    }
+}
@@ -3,15 +3,17 @@ package inputmethod.switcher.impl;
 import com.intellij.openapi.diagnostic.Logger;
 import enums.InputState;
 
-import com.sun.jna.Library;
-import com.sun.jna.Native;
-import com.sun.jna.Pointer;
-import com.sun.jna.platform.win32.WinDef.HWND;
-import com.sun.jna.win32.StdCallLibrary;
-import com.sun.jna.win32.W32APIOptions;
+import com.sun.jna.platform.win32.BaseTSD;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.platform.win32.WinUser;
 import inputmethod.switcher.InputMethodSwitchStrategy;
+import inputmethod.switcher.InputStateCache;
+import inputmethod.switcher.impl.ime.ImeWindowApi;
+import inputmethod.switcher.impl.ime.NativeImeWindowApi;
+import inputmethod.switcher.impl.win32.Win32;
 import utlis.LogUtil;
 
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.sun.jna.platform.win32.WinUser.KEYBDINPUT.KEYEVENTF_KEYUP;
 import static com.sun.jna.platform.win32.WinUser.VK_LSHIFT;
@@ -19,36 +21,21 @@ import static com.sun.jna.platform.win32.WinUser.VK_LSHIFT;
 
 public class KeyboardSwitcher implements InputMethodSwitchStrategy {
 
-    private static long lastPressTime = 0;
+    private static final AtomicLong lastPressTime = new AtomicLong();
     private static final long MIN_PRESS_INTERVAL_MS = 100;
+    // 写入 dwExtraInfo，标记这是插件注入的按键
+    private static final long INJECTED_MARKER = 0x4B535754L;
+    // 按下、释放两个事件一次 SendInput 原子注入
+    private static final WinUser.INPUT[] SHIFT_INPUTS = createShiftInputs();
 
-    public interface Imm32 extends Library {
+    private static final ImeWindowApi IME = new NativeImeWindowApi();
 
-        Imm32 INSTANCE = Native.load("imm32", Imm32.class);
-
-        Pointer ImmGetDefaultIMEWnd(Pointer hWnd);
-
-        //释放窗口
-        Pointer ImmGetContext(HWND hWnd);
-
-        boolean ImmReleaseContext(HWND hWnd, Pointer hIMC);
-
-    }
-
-    public interface User32 extends StdCallLibrary {
-        User32 INSTANCE = Native.load("user32", User32.class, W32APIOptions.DEFAULT_OPTIONS);
-
-        HWND GetForegroundWindow();
-
-        long SendMessage(HWND hWnd, int Msg, long wParam, long lParam);
-
-        //模拟按键盘按键
-        void keybd_event(byte bVk, byte bScan, int dwFlags, int extraInfo);
+    @Override
+    public void warmUp() {
+        // 触发 imm32/user32 加载
+        LogUtil.debug("预加载原生库: " + Win32.api());
     }
 
-    private static final int WM_IME_CONTROL = 0x0283;
-    private static final int IMC_GETOPENSTATUS = 0x0001;
-
     @Override
     public InputState getCurrentMode() {
         return isEnglishMode() ? InputState.ENGLISH : InputState.CHINESE;
@@ -56,61 +43,70 @@ public class KeyboardSwitcher implements InputMethodSwitchStrategy {
 
     public static boolean isEnglishMode() {
         try {
-            User32 user32 = User32.INSTANCE;
-            Imm32 imm32 = Imm32.INSTANCE;
-
-            HWND activeWindow = user32.GetForegroundWindow();
-            if (activeWindow == null) {
-                LogUtil.info("未找到激活窗口");
-                return false;
-            }
-
-            Pointer imeWnd = imm32.ImmGetDefaultIMEWnd(activeWindow.getPointer());
-            if (imeWnd == null) {
+            // IME 窗口按激活窗口缓存，稳定状态下只有这一次 SendMessage
+            long imeWindow = IME.defaultImeWindow();
+            if (imeWindow == 0) {
                 LogUtil.info("未找到输入法窗口");
                 return true; // 英文输入法可能没有 IME 窗口
             }
 
-            long result = user32.SendMessage(new HWND(imeWnd), WM_IME_CONTROL, IMC_GETOPENSTATUS, 0);
-            Pointer hIMC = imm32.ImmGetContext(activeWindow);
-            if (hIMC != null) {
-                boolean b = imm32.ImmReleaseContext(activeWindow, hIMC);
-                LogUtil.debug("ImmReleaseContext:" + b);
-            }
-
-            return result == 0;
+            // 读取的是转换模式（不是打开状态）：为 0 即字母数字模式
+            long conversionMode = IME.sendImeControl(imeWindow, ImeWindowApi.IMC_GETCONVERSIONMODE, 0);
+            return conversionMode == 0;
         } catch (Exception e) {
             LogUtil.error("获取输入法异常");
             return false;
         }
     }
 
-    public static void pressShift() {
+    /**
+     * @return Shift 按下、释放事件是否都已注入
+     */
+    public static boolean pressShift() {
         long now = System.currentTimeMillis();
-        if (now - lastPressTime < MIN_PRESS_INTERVAL_MS) {
-            // 如果距离上次按下的时间小于500毫秒，则跳过本次操作
-            return;
+        long last = lastPressTime.get();
+        if (now - last < MIN_PRESS_INTERVAL_MS || !lastPressTime.compareAndSet(last, now)) {
+            // 如果距离上次按下的时间小于100毫秒，则跳过本次操作
+            // 没有真正切换，缓存里记录的目标状态不可信
+            InputStateCache.invalidate("Shift 去抖跳过");
+            return false;
         }
-        User32 user32 = User32.INSTANCE;
-
-        // 按下左 Shift
-        user32.keybd_event((byte) VK_LSHIFT, (byte) 0, 0, 0);
-        LogUtil.debug("按下 Shift");
 
+        // 登记后再注入，IDE 收到这两个事件时直接吞掉
+        InjectedKeyTracker.expect(SHIFT_INPUTS.length);
+        //模拟按键盘按键，INPUT 数组由 toArray 连续分配，传首地址即可
+        int sent = Win32.api().sendInput(SHIFT_INPUTS.length, SHIFT_INPUTS[0].getPointer(),
+                SHIFT_INPUTS[0].size());
+        LogUtil.debug("SendInput Shift: " + sent);
+        if (sent != SHIFT_INPUTS.length) {
+            // 被 UIPI 等拦截时事件不会到达，不再等待
+            InjectedKeyTracker.expect(0);
+            InputStateCache.invalidate("SendInput 失败");
+            return false;
+        }
+        return true;
+    }
 
-        // 释放左 Shift
-        user32.keybd_event((byte) VK_LSHIFT, (byte) 0, KEYEVENTF_KEYUP, 0);
-        LogUtil.debug("释放 Shift");
-        lastPressTime = now;
-
+    private static WinUser.INPUT[] createShiftInputs() {
+        WinUser.INPUT[] inputs = (WinUser.INPUT[]) new WinUser.INPUT().toArray(2);
+        for (int i = 0; i < inputs.length; i++) {
+            WinUser.INPUT input = inputs[i];
+            input.type = new WinDef.DWORD(WinUser.INPUT.INPUT_KEYBOARD);
+            input.input.setType("ki");
+            input.input.ki.wVk = new WinDef.WORD(VK_LSHIFT);
+            input.input.ki.dwFlags = new WinDef.DWORD(i == 0 ? 0 : KEYEVENTF_KEYUP);
+            input.input.ki.dwExtraInfo = new BaseTSD.ULONG_PTR(INJECTED_MARKER);
+            input.write();
+        }
+        return inputs;
     }
 
 
     @Override
-    public void change() {
+    public boolean change() {
         long startTimeNano_l = System.nanoTime();
         try {
-            pressShift();
+            return pressShift();
         } finally {
             long nano_l = System.nanoTime() - startTimeNano_l;
             double milliseconds_l = nano_l / 1e6;
@@ -1,19 +1,22 @@
 package inputmethod.switcher.impl;
 
 import com.intellij.openapi.diagnostic.Logger;
-import com.sun.jna.platform.win32.User32;
-import com.sun.jna.platform.win32.Variant;
 import com.sun.jna.platform.win32.WinDef;
-import com.sun.jna.ptr.PointerByReference;
 import enums.InputState;
+import inputmethod.switcher.CircuitBreaker;
 import inputmethod.switcher.InputMethodSwitchStrategy;
+import inputmethod.switcher.InputStateCache;
+import inputmethod.switcher.impl.uia.ComNameChangeBinding;
+import inputmethod.switcher.impl.uia.PushStateTracker;
+import inputmethod.switcher.impl.uia.TrayButtonScanner;
+import inputmethod.switcher.impl.uia.TrayButtonScanner.TrayButton;
+import inputmethod.switcher.impl.uia.UiaSession;
+import inputmethod.switcher.impl.win32.Win32;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.Element;
-import mmarquee.automation.UIAutomation;
-import mmarquee.uiautomation.IUIAutomationElement;
 import mmarquee.uiautomation.IUIAutomationLegacyIAccessiblePattern;
-import mmarquee.uiautomation.IUIAutomationLegacyIAccessiblePatternConverter;
-import mmarquee.uiautomation.TreeScope;
+import state.SettingsState;
+import state.SwitcherCacheState;
 import utlis.LogUtil;
 
 import java.util.List;
@@ -26,17 +29,29 @@ public class WindowsUIAutomationSwitcher implements InputMethodSwitchStrategy {
             "输入指示器", "中文模式", "英语模式", "输入模式", "语言栏"
     };
 
-    private List<Element> buttons;
-    private UIAutomation automation;
-    private Element buttonCache;
+    // 以下缓存只在切换线程（SwitchExecutorService）上读写，线程封闭，无需 volatile
+    private final UiaSession session = new UiaSession();
+    private final TrayButtonScanner scanner = new TrayButtonScanner(session);
+    private final PushStateTracker pushTracker = new PushStateTracker(
+            new ComNameChangeBinding(session::automation), WindowsUIAutomationSwitcher::classifyName);
+    // 资源管理器异常时避免每个事件都全量扫描托盘
+    private final CircuitBreaker breaker = new CircuitBreaker("UIAutomation");
 
     public WindowsUIAutomationSwitcher() {
         LogUtil.info("WindowsUIAutomationSwitcher  init");
     }
 
+    // backoffMs：该错误首次触发熔断时的退避时间
     public enum ErrorCode {
-        COM_INIT_FAILED_STA, AUTOMATION_CREATE_FAILED, TRAY_WINDOW_NOT_FOUND,
-        ELEMENT_FROM_HANDLE_FAILED, BUTTONS_NOT_FOUND, BUTTON_INVOKE_FAILED, NO_VALID_BUTTON
+        COM_INIT_FAILED_STA(5000), AUTOMATION_CREATE_FAILED(5000), TRAY_WINDOW_NOT_FOUND(2000),
+        ELEMENT_FROM_HANDLE_FAILED(1000), BUTTONS_NOT_FOUND(1000), BUTTON_INVOKE_FAILED(250), NO_VALID_BUTTON(1000),
+        EVENT_SUBSCRIBE_FAILED(1000);
+
+        public final long backoffMs;
+
+        ErrorCode(long backoffMs) {
+            this.backoffMs = backoffMs;
+        }
     }
 
     public static class UIAutomationSwitcherException extends RuntimeException {
@@ -57,33 +72,81 @@ public class WindowsUIAutomationSwitcher implements InputMethodSwitchStrategy {
         }
     }
 
+    @Override
+    public void warmUp() {
+        // UIAutomation 失败时会回退到 Imm32，一并预加载
+        new KeyboardSwitcher().warmUp();
+        try {
+            session.automation();
+            retryOperation(this::findValidInputMethodButton);
+            breaker.onSuccess();
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void onTrayChanged() {
+        // 在下一次切换之前提前重建按钮缓存，不等调用失败再重试
+        resetCache();
+        try {
+            retryOperation(this::findValidInputMethodButton);
+            breaker.onSuccess();
+            LogUtil.info("托盘按钮缓存已重建");
+        } catch (RuntimeException e) {
+            LogUtil.warn("托盘按钮缓存重建失败: " + recordFailure(e));
+        }
+    }
+
     @Override
     public InputState getCurrentMode() {
         return isEnglishMode() ? InputState.ENGLISH : InputState.CHINESE;
     }
 
     public boolean isEnglishMode() {
+        if (!breaker.allowRequest()) {
+            return KeyboardSwitcher.isEnglishMode();
+        }
         try {
-            return retryOperation(this::checkEnglishModeWithCache);
-        } catch (Exception e) {
+            boolean english = retryOperation(this::checkEnglishModeWithCache);
+            breaker.onSuccess();
+            return english;
+        } catch (RuntimeException e) {
+            recordFailure(e);
             LogUtil.warn("Failed  to get input mode via UI Automation, falling back to Imm32 API");
             return KeyboardSwitcher.isEnglishMode();
         }
     }
 
     @Override
-    public void change() {
+    public boolean change() {
+        if (!breaker.allowRequest()) {
+            InputStateCache.invalidate("UIAutomation 熔断中");
+            return false;
+        }
         long startTime = System.nanoTime();
         try {
             retryOperation(this::performButtonClick);
-        } catch (UIAutomationSwitcherException e) {
-            LOG.error("Input  method switch failed: " + e.getErrorCode(), e);
+            breaker.onSuccess();
+            return true;
+        } catch (RuntimeException e) {
+            LOG.error("Input  method switch failed: " + recordFailure(e), e);
+            InputStateCache.invalidate("UIAutomation 切换失败");
+            return false;
         } finally {
             double durationMs = (System.nanoTime() - startTime) / 1e6;
             LogUtil.info(" 执行时间: " + String.format("%.6f", durationMs) + " ms");
         }
     }
 
+    @Override
+    public void dispose() {
+        // 先关闭 Name 订阅，再释放会话持有的按钮、条件、CacheRequest 和 IUIAutomation
+        pushTracker.markStale();
+        session.close();
+    }
+
     // ======= 核心操作 =======
     private boolean performButtonClick() throws AutomationException {
         Element targetButton = findValidInputMethodButton();
@@ -91,16 +154,35 @@ public class WindowsUIAutomationSwitcher implements InputMethodSwitchStrategy {
             throw new UIAutomationSwitcherException(ErrorCode.NO_VALID_BUTTON,
                     "No valid input method button found");
         }
-        doDefaultAction(targetButton);
+        doDefaultAction();
         return true;
     }
 
     private Boolean checkEnglishModeWithCache() throws AutomationException {
+        // 推送模式下按钮是否失效由订阅判断，不再逐次读取 Name 校验
+        Element buttonCache = session.button();
+        if (SettingsState.getInstance().uiaPushMode && buttonCache != null) {
+            InputState pushed = pushTracker.current(buttonCache);
+            if (pushed != InputState.NONE) {
+                return pushed == InputState.ENGLISH;
+            }
+        }
         Element targetButton = findValidInputMethodButton();
         InputState state = matchInputMethodButton(targetButton);
         return state == InputState.ENGLISH;
     }
 
+    /**
+     * 记录一次失败结果；非预期的运行时异常按创建失败退避，避免 HALF_OPEN 的试探结果丢失
+     */
+    private ErrorCode recordFailure(RuntimeException e) {
+        ErrorCode code = e instanceof UIAutomationSwitcherException uiaException
+                ? uiaException.getErrorCode()
+                : ErrorCode.AUTOMATION_CREATE_FAILED;
+        breaker.onFailure(code.backoffMs);
+        return code;
+    }
+
     // ======= 重试机制 =======
     private <T> T retryOperation(OperationSupplier<T> operation) {
         for (int retry = 0; retry <= MAX_RETRY_COUNT; retry++) {
@@ -123,9 +205,13 @@ public class WindowsUIAutomationSwitcher implements InputMethodSwitchStrategy {
     }
 
     private void handleRetryException(Exception e, int retryCount) {
-        if (e.getMessage() != null && e.getMessage().contains("0x80040201")) {
+        String message = e.getMessage();
+        if (message == null) {
+            return;
+        }
+        if (message.contains("0x80040201")) {
             LogUtil.warn("Taskbar  resource invalid, retrying... Attempt: " + (retryCount + 1));
-        } else if (e.getMessage().contains("RPC_E_CHANGED_MODE")) {
+        } else if (message.contains("RPC_E_CHANGED_MODE")) {
             throw new UIAutomationSwitcherException(ErrorCode.COM_INIT_FAILED_STA,
                     "COM initialization failed in STA mode", e);
         }
@@ -133,80 +219,124 @@ public class WindowsUIAutomationSwitcher implements InputMethodSwitchStrategy {
 
     // ======= 缓存处理 =======
     private void resetCache() {
-        buttons = null;
-        automation = null;
-        buttonCache = null;
+        pushTracker.markStale();
+        session.invalidateButton();
     }
 
     private Element findValidInputMethodButton() throws AutomationException {
         // 尝试使用缓存按钮
+        Element buttonCache = session.button();
         if (buttonCache != null && isValidInputMethodButton(buttonCache)) {
             return buttonCache;
         }
 
-        // 获取新的按钮列表
-        if (buttons == null || buttons.isEmpty()) {
-            buttons = findInputMethodButtons();
+        WinDef.HWND hTrayWnd = findTrayWindow();
+
+        // 按上次保存的指纹直接定位，命中时跳过全量扫描
+        TrayButton fingerprinted = resolveByFingerprint(hTrayWnd);
+        if (fingerprinted != null) {
+            return session.bindButton(fingerprinted);
+        }
+
+        // 获取新的按钮列表，名称已随 FindAllBuildCache 一次性取回
+        List<TrayButton> buttons = findInputMethodButtons(hTrayWnd);
+        TrayButton target = null;
+        try {
+            target = pickInputMethodButton(buttons);
+            if (target == null) {
+                throw new UIAutomationSwitcherException(ErrorCode.NO_VALID_BUTTON,
+                        "No valid input method button in tray");
+            }
+            saveFingerprint(target);
+            return session.bindButton(target);
+        } finally {
+            // 未选中的按钮立即释放，选中按钮的引用已转交给会话
+            for (TrayButton button : buttons) {
+                if (button != target) {
+                    button.release();
+                }
+            }
+        }
+    }
+
+    private TrayButton resolveByFingerprint(WinDef.HWND hTrayWnd) {
+        SwitcherCacheState cache = SwitcherCacheState.getInstance();
+        if (!cache.hasTrayButtonFingerprint()) {
+            return null;
+        }
+        TrayButton button = scanner.findFirst(hTrayWnd, cache.trayButtonAutomationId, cache.trayButtonClassName);
+        if (button == null) {
+            LogUtil.info("托盘按钮指纹未命中，回退全量扫描");
+            cache.clearTrayButtonFingerprint();
+            return null;
+        }
+        // 名称随中/英状态变化，只要求仍能识别为输入法按钮，不要求与保存时的关键字相同
+        if (classifyName(button.name()) == InputState.NONE) {
+            LogUtil.info("托盘按钮指纹命中的不是输入法按钮，回退全量扫描");
+            button.release();
+            cache.clearTrayButtonFingerprint();
+            return null;
+        }
+        return button;
+    }
+
+    private void saveFingerprint(TrayButton button) {
+        SwitcherCacheState cache = SwitcherCacheState.getInstance();
+        cache.trayButtonIndex = button.index();
+        cache.trayButtonAutomationId = button.automationId() == null ? "" : button.automationId();
+        cache.trayButtonClassName = button.className() == null ? "" : button.className();
+        LogUtil.info("托盘按钮指纹已更新: index=" + cache.trayButtonIndex
+                + " automationId=" + cache.trayButtonAutomationId + " className=" + cache.trayButtonClassName);
+    }
+
+    private TrayButton pickInputMethodButton(List<TrayButton> buttons) {
+        // 优先检查上次命中的位置
+        int savedIndex = SwitcherCacheState.getInstance().trayButtonIndex;
+        if (savedIndex >= 0 && savedIndex < buttons.size()
+                && classifyName(buttons.get(savedIndex).name()) != InputState.NONE) {
+            return buttons.get(savedIndex);
         }
 
-        // 优先检查特定位置（适配Win10(4)/Win11(5)）
+        // 其次检查特定位置（适配Win10(4)/Win11(5)）
         if (buttons.size() > 4) {
-            Element button = buttons.get(buttons.size() - (buttons.size() > 5 ? 5 : 4));
-            if (isValidInputMethodButton(button)) {
-                buttonCache = button;
+            TrayButton button = buttons.get(buttons.size() - (buttons.size() > 5 ? 5 : 4));
+            if (classifyName(button.name()) != InputState.NONE) {
                 return button;
             }
         }
 
         // 遍历查找有效按钮
         for (int i = buttons.size() - 1; i >= 0; i--) {
-            Element button = buttons.get(i);
-            if (isValidInputMethodButton(button)) {
-                buttonCache = button;
+            TrayButton button = buttons.get(i);
+            if (classifyName(button.name()) != InputState.NONE) {
                 return button;
             }
         }
-
-        throw new UIAutomationSwitcherException(ErrorCode.NO_VALID_BUTTON,
-                "No valid input method button in tray");
+        return null;
     }
 
-    private List<Element> findInputMethodButtons() throws AutomationException {
-        WinDef.HWND hTrayWnd = User32.INSTANCE.FindWindow("Shell_TrayWnd", null);
+    private WinDef.HWND findTrayWindow() {
+        WinDef.HWND hTrayWnd = Win32.api().findWindow("Shell_TrayWnd", null);
         if (hTrayWnd == null) {
             throw new UIAutomationSwitcherException(ErrorCode.TRAY_WINDOW_NOT_FOUND,
                     "Tray window not found");
         }
+        return hTrayWnd;
+    }
 
-        // 初始化自动化实例
-        if (automation == null) {
-            automation = UIAutomation.getInstance();
-        }
-
-        // 获取根元素
-        Element root = automation.getElementFromHandle(hTrayWnd);
-        if (root == null) {
-            throw new UIAutomationSwitcherException(ErrorCode.ELEMENT_FROM_HANDLE_FAILED,
-                    "Failed to get element from handle");
-        }
-
-        // 创建属性条件
-        Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
-        variant.setValue(3, new WinDef.LONG(50000L));
-        PointerByReference propertyCondition = automation.createPropertyCondition(30003, variant);
-
-        // 查找按钮
+    private List<TrayButton> findInputMethodButtons(WinDef.HWND hTrayWnd) {
+        // 查找按钮，Name/RuntimeId 通过 CacheRequest 在同一次调用中预取
         long startTime = System.nanoTime();
         try {
-            List<Element> foundButtons = root.findAll(new TreeScope(TreeScope.DESCENDANTS), propertyCondition);
-            if (foundButtons == null || foundButtons.isEmpty()) {
+            List<TrayButton> foundButtons = scanner.scan(hTrayWnd);
+            if (foundButtons.isEmpty()) {
                 throw new UIAutomationSwitcherException(ErrorCode.BUTTONS_NOT_FOUND,
                         "No buttons found in tray");
             }
             return foundButtons;
         } finally {
             double durationMs = (System.nanoTime() - startTime) / 1e6;
-            LogUtil.debug("findAll  execution time: " + String.format("%.6f", durationMs) + " ms");
+            LogUtil.debug("findAllBuildCache  execution time: " + String.format("%.6f", durationMs) + " ms");
         }
     }
 
@@ -223,31 +353,37 @@ public class WindowsUIAutomationSwitcher implements InputMethodSwitchStrategy {
     private InputState matchInputMethodButton(Element element) throws AutomationException {
         if (element == null) return InputState.NONE;
 
-        String name = element.getName();
-        if (name == null || name.isEmpty()) return InputState.NONE;
+        return classifyName(element.getName());
+    }
+
+    private static InputState classifyName(String name) {
+        if (matchKeyword(name) == null) return InputState.NONE;
+
+        if (name.contains("英") || name.contains("ENG")) {
+            return InputState.ENGLISH;
+        }
+        if (name.contains("中")) {
+            return InputState.CHINESE;
+        }
+        return InputState.NONE;
+    }
+
+    // 返回名称命中的输入法按钮关键字，未命中返回 null
+    private static String matchKeyword(String name) {
+        if (name == null || name.isEmpty()) return null;
 
         for (String keyword : INPUT_METHOD_KEYWORDS) {
             if (name.contains(keyword)) {
-                if (name.contains("英") || name.contains("ENG")) {
-                    return InputState.ENGLISH;
-                }
-                if (name.contains("中")) {
-                    return InputState.CHINESE;
-                }
-                break;
+                return keyword;
             }
         }
-        return InputState.NONE;
+        return null;
     }
 
-    private void doDefaultAction(Element button) {
+    private void doDefaultAction() {
         try {
-            IUIAutomationElement element = button.getElement();
-            PointerByReference legacyPatternRef = new PointerByReference();
-            element.getCurrentPattern(10018, legacyPatternRef);
-
-            IUIAutomationLegacyIAccessiblePattern legacy =
-                    IUIAutomationLegacyIAccessiblePatternConverter.pointerToInterface(legacyPatternRef);
+            // 模式绑定在会话中的按钮上，按钮失效时随之释放
+            IUIAutomationLegacyIAccessiblePattern legacy = session.legacyPattern();
 
             int result = legacy.doDefaultAction();
             LogUtil.debug("doDefaultAction  result: " + result);
@@ -0,0 +1,103 @@
+package inputmethod.switcher.impl.auto;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * 单个切换引擎最近若干次切换的成功率和耗时，只在切换线程上读写
+ */
+public class EngineStats {
+    private static final int WINDOW = 32;
+    // 样本少于这个数时使用上次会话保存的结果
+    private static final int MIN_SAMPLES = 2;
+
+    /**
+     * 排名顺序：成功率（按 10% 分档）高的在前，其次 p50、p99 低的在前
+     */
+    public static final Comparator<Summary> RANKING = Comparator
+            .comparingDouble((Summary s) -> -Math.round(s.successRate() * 10) / 10.0)
+            .thenComparingDouble(Summary::p50Ms)
+            .thenComparingDouble(Summary::p99Ms);
+
+    private final long[] latencies = new long[WINDOW];
+    private final boolean[] results = new boolean[WINDOW];
+    private int count;
+    private int next;
+    private Summary prior = Summary.UNKNOWN;
+
+    public void record(long latencyNanos, boolean success) {
+        latencies[next] = latencyNanos;
+        results[next] = success;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+    }
+
+    public void setPrior(Summary prior) {
+        this.prior = prior;
+    }
+
+    public boolean hasSamples() {
+        return count >= MIN_SAMPLES;
+    }
+
+    public Summary summary() {
+        if (!hasSamples()) {
+            return prior;
+        }
+        long[] succeeded = new long[count];
+        int successes = 0;
+        for (int i = 0; i < count; i++) {
+            if (results[i]) {
+                succeeded[successes++] = latencies[i];
+            }
+        }
+        if (successes == 0) {
+            return new Summary(0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        Arrays.sort(succeeded, 0, successes);
+        return new Summary((double) successes / count,
+                percentile(succeeded, successes, 0.50) / 1e6,
+                percentile(succeeded, successes, 0.99) / 1e6);
+    }
+
+    private static long percentile(long[] sorted, int size, double p) {
+        return sorted[Math.min(size - 1, (int) Math.ceil(p * size) - 1)];
+    }
+
+    /**
+     * @param successRate 成功率 0~1
+     * @param p50Ms       成功切换耗时的中位数（毫秒）
+     * @param p99Ms       成功切换耗时的 p99（毫秒）
+     */
+    public record Summary(double successRate, double p50Ms, double p99Ms) {
+        // 没有成功耗时的记录保存为 inf
+        private static final String INFINITE = "inf";
+        // 没有任何数据的引擎排在有数据的引擎之后
+        public static final Summary UNKNOWN = new Summary(0.5, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+        public String format() {
+            return String.format(Locale.ROOT, "%.2f/%s/%s", successRate, formatMs(p50Ms), formatMs(p99Ms));
+        }
+
+        private static String formatMs(double ms) {
+            return Double.isInfinite(ms) ? INFINITE : String.format(Locale.ROOT, "%.3f", ms);
+        }
+
+        private static double parseMs(String text) {
+            return INFINITE.equals(text) ? Double.POSITIVE_INFINITY : Double.parseDouble(text);
+        }
+
+        public static Summary parse(String text) {
+            String[] parts = text.split("/");
+            if (parts.length != 3) {
+                return UNKNOWN;
+            }
+            try {
+                return new Summary(Double.parseDouble(parts[0]), parseMs(parts[1]), parseMs(parts[2]));
+            } catch (NumberFormatException e) {
+                return UNKNOWN;
+            }
+        }
+    }
+}
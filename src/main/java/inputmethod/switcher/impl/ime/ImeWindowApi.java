@@ -0,0 +1,31 @@
+package inputmethod.switcher.impl.ime;
+
+/**
+ * 向默认 IME 窗口发送 WM_IME_CONTROL 所需的原生调用
+ * <p>
+ * 窗口句柄用 long 表示，状态逻辑不依赖 JNA，可以在非 Windows 环境下用替身实现验证。
+ */
+public interface ImeWindowApi {
+    // WM_IME_CONTROL 子命令
+    int IMC_GETCONVERSIONMODE = 0x0001;
+    int IMC_SETCONVERSIONMODE = 0x0002;
+    int IMC_GETOPENSTATUS = 0x0005;
+    int IMC_SETOPENSTATUS = 0x0006;
+    // 转换模式中的“本地语言”位，置位表示中文输入
+    long IME_CMODE_NATIVE = 0x0001;
+
+    /**
+     * 当前前台窗口的默认 IME 窗口句柄，没有时返回 0
+     */
+    long defaultImeWindow();
+
+    /**
+     * 向 IME 窗口发送 WM_IME_CONTROL
+     *
+     * @param imeWindow IME 窗口句柄
+     * @param command   IMC_* 子命令
+     * @param value     子命令参数
+     * @return SendMessage 的返回值
+     */
+    long sendImeControl(long imeWindow, int command, long value);
+}
@@ -0,0 +1,71 @@
+package inputmethod.switcher.impl.ime;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import inputmethod.switcher.impl.win32.Win32;
+import utlis.LogUtil;
+
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 缓存 IDE 当前激活窗口的句柄及其默认 IME 窗口
+ * <p>
+ * 窗口激活时在 EDT 上记录句柄，切换线程首次查询时解析一次 IME 窗口，之后每次查询只剩一次 SendMessage。
+ * IDE 没有激活窗口时退回按前台窗口查询。
+ */
+public class ImeWindowProbe {
+    // null 表示 IDE 当前没有激活窗口
+    private static final AtomicReference<Binding> BINDING = new AtomicReference<>();
+
+    // 私有构造防止实例化
+    private ImeWindowProbe() {
+    }
+
+    /**
+     * IDE 激活窗口变化时调用，在 EDT 上调用，仅限 Windows
+     */
+    public static void windowActivated(Window window) {
+        BINDING.set(window == null ? null : new Binding(windowHandle(window), null));
+    }
+
+    /**
+     * 当前激活窗口的默认 IME 窗口，没有时返回 null，在切换线程上调用
+     */
+    public static HWND imeWindow() {
+        Binding current = BINDING.get();
+        if (current == null || current.window() == null) {
+            HWND foreground = Win32.api().getForegroundWindow();
+            return foreground == null ? null : resolve(foreground);
+        }
+        if (current.imeWindow() == null) {
+            HWND imeWindow = resolve(current.window());
+            if (imeWindow == null) {
+                return null;
+            }
+            // 期间窗口又切换过时不覆盖新的绑定
+            BINDING.compareAndSet(current, new Binding(current.window(), imeWindow));
+            return imeWindow;
+        }
+        return current.imeWindow();
+    }
+
+    private static HWND resolve(HWND window) {
+        return Win32.api().immGetDefaultIMEWnd(window);
+    }
+
+    private static HWND windowHandle(Window window) {
+        try {
+            Pointer pointer = Native.getWindowPointer(window);
+            return pointer == null ? null : new HWND(pointer);
+        } catch (Exception | LinkageError e) {
+            // 没有原生库或窗口尚未显示时只是拿不到句柄，查询会退回前台窗口
+            LogUtil.debug("获取窗口句柄失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private record Binding(HWND window, HWND imeWindow) {
+    }
+}
@@ -0,0 +1,23 @@
+package inputmethod.switcher.impl.ime;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import inputmethod.switcher.impl.win32.Win32;
+
+/**
+ * 基于 imm32/user32 的 {@link ImeWindowApi} 实现
+ */
+public class NativeImeWindowApi implements ImeWindowApi {
+    private static final int WM_IME_CONTROL = 0x0283;
+
+    @Override
+    public long defaultImeWindow() {
+        HWND imeWnd = ImeWindowProbe.imeWindow();
+        return imeWnd == null ? 0 : Pointer.nativeValue(imeWnd.getPointer());
+    }
+
+    @Override
+    public long sendImeControl(long imeWindow, int command, long value) {
+        return Win32.api().sendMessage(new HWND(new Pointer(imeWindow)), WM_IME_CONTROL, command, value);
+    }
+}
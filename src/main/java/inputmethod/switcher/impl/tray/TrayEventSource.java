@@ -0,0 +1,26 @@
+package inputmethod.switcher.impl.tray;
+
+/**
+ * 任务栏重建、显示设置变化等会让托盘按钮缓存失效的系统事件来源
+ */
+public interface TrayEventSource {
+
+    /**
+     * 开始监听，回调在事件源自己的线程上执行，应尽快返回
+     */
+    void start(Listener listener);
+
+    void close();
+
+    interface Listener {
+        /**
+         * 资源管理器重启后任务栏重新创建
+         */
+        void onTaskbarCreated();
+
+        /**
+         * 分辨率或显示器配置变化
+         */
+        void onDisplayChanged();
+    }
+}
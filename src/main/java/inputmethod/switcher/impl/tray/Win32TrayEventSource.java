@@ -0,0 +1,95 @@
+package inputmethod.switcher.impl.tray;
+
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.User32;
+import com.sun.jna.platform.win32.WinDef.HINSTANCE;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinDef.LPARAM;
+import com.sun.jna.platform.win32.WinDef.LRESULT;
+import com.sun.jna.platform.win32.WinDef.WPARAM;
+import com.sun.jna.platform.win32.WinUser;
+import utlis.LogUtil;
+
+/**
+ * 通过隐藏窗口接收 TaskbarCreated 和 WM_DISPLAYCHANGE
+ * <p>
+ * 这两个都是广播消息，消息专用窗口（HWND_MESSAGE）收不到，因此创建一个从不显示的顶层工具窗口，
+ * 在独立的守护线程上运行消息循环。
+ */
+public class Win32TrayEventSource implements TrayEventSource {
+    private static final String CLASS_NAME = "KeySwitchTrayEvents";
+    private static final String THREAD_NAME = "key-switch-tray-events";
+    private static final int WM_DISPLAYCHANGE = 0x007E;
+    private static final int WS_EX_TOOLWINDOW = 0x00000080;
+
+    private Thread thread;
+    private volatile HWND hwnd;
+    // 窗口过程回调必须保持强引用，否则会被 GC 回收
+    private WinUser.WindowProc windowProc;
+
+    @Override
+    public synchronized void start(Listener listener) {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> runMessageLoop(listener), THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        HWND window = hwnd;
+        if (window != null) {
+            // 默认窗口过程收到 WM_CLOSE 会销毁窗口，WM_DESTROY 中退出消息循环
+            User32.INSTANCE.PostMessage(window, WinUser.WM_CLOSE, null, null);
+        }
+    }
+
+    private void runMessageLoop(Listener listener) {
+        User32 user32 = User32.INSTANCE;
+        int taskbarCreated = user32.RegisterWindowMessage("TaskbarCreated");
+        HINSTANCE instance = Kernel32.INSTANCE.GetModuleHandle(null);
+
+        windowProc = new WinUser.WindowProc() {
+            @Override
+            public LRESULT callback(HWND hWnd, int uMsg, WPARAM wParam, LPARAM lParam) {
+                if (uMsg == taskbarCreated) {
+                    listener.onTaskbarCreated();
+                } else if (uMsg == WM_DISPLAYCHANGE) {
+                    listener.onDisplayChanged();
+                } else if (uMsg == WinUser.WM_DESTROY) {
+                    user32.PostQuitMessage(0);
+                    return new LRESULT(0);
+                }
+                return user32.DefWindowProc(hWnd, uMsg, wParam, lParam);
+            }
+        };
+
+        WinUser.WNDCLASSEX windowClass = new WinUser.WNDCLASSEX();
+        windowClass.hInstance = instance;
+        windowClass.lpfnWndProc = windowProc;
+        windowClass.lpszClassName = CLASS_NAME;
+        if (user32.RegisterClassEx(windowClass).intValue() == 0) {
+            LogUtil.warn("托盘事件窗口类注册失败: " + Kernel32.INSTANCE.GetLastError());
+            return;
+        }
+        try {
+            hwnd = user32.CreateWindowEx(WS_EX_TOOLWINDOW, CLASS_NAME, "key-switch", 0,
+                    0, 0, 0, 0, null, null, instance, null);
+            if (hwnd == null) {
+                LogUtil.warn("托盘事件窗口创建失败: " + Kernel32.INSTANCE.GetLastError());
+                return;
+            }
+            LogUtil.info("托盘事件监听已启动");
+            WinUser.MSG msg = new WinUser.MSG();
+            while (user32.GetMessage(msg, null, 0, 0) > 0) {
+                user32.TranslateMessage(msg);
+                user32.DispatchMessage(msg);
+            }
+        } finally {
+            hwnd = null;
+            user32.UnregisterClass(CLASS_NAME, instance);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package inputmethod.switcher.impl.uia;
+
+import com.sun.jna.CallbackReference;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Guid;
+import com.sun.jna.win32.StdCallLibrary;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.ErrorCode;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.UIAutomationSwitcherException;
+import mmarquee.automation.AutomationException;
+import mmarquee.automation.Element;
+import utlis.LogUtil;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 基于 IUIAutomation::AddPropertyChangedEventHandlerNativeArray 的 Name 订阅
+ */
+public class ComNameChangeBinding implements NameChangeBinding {
+    private static final Guid.IID IID_IUnknown = new Guid.IID("{00000000-0000-0000-C000-000000000046}");
+    private static final Guid.IID IID_IUIAutomationPropertyChangedEventHandler =
+            new Guid.IID("{40CD37D4-C756-4B0C-8C6F-BDDFEEB13B50}");
+
+    // IUIAutomation 虚表序号
+    private static final int ADD_PROPERTY_CHANGED_EVENT_HANDLER_NATIVE_ARRAY = 34;
+    private static final int REMOVE_PROPERTY_CHANGED_EVENT_HANDLER = 36;
+
+    private static final int UIA_NAME_PROPERTY_ID = 30005;
+    private static final int TREE_SCOPE_ELEMENT = 1;
+    private static final int VT_BSTR = 8;
+    private static final int E_NOINTERFACE = 0x80004002;
+
+    // 原始 IUIAutomation 指针，与托盘扫描共用
+    private final Supplier<Pointer> automation;
+
+    public ComNameChangeBinding(Supplier<Pointer> automation) {
+        this.automation = automation;
+    }
+
+    @Override
+    public Subscription subscribe(Element element, Consumer<String> onNameChanged) {
+        Pointer owner = automation.get();
+        Pointer rawElement = UiaComSupport.rawElement(element);
+        PropertyChangedHandler handler = new PropertyChangedHandler(onNameChanged);
+        Memory properties = new Memory(4);
+        properties.setInt(0, UIA_NAME_PROPERTY_ID);
+        int hr = UiaComSupport.invoke(owner, ADD_PROPERTY_CHANGED_EVENT_HANDLER_NATIVE_ARRAY,
+                rawElement, TREE_SCOPE_ELEMENT, Pointer.NULL, handler.pointer, properties, 1);
+        if (hr < 0) {
+            UiaComSupport.release(rawElement);
+            handler.release();
+            throw new UIAutomationSwitcherException(ErrorCode.EVENT_SUBSCRIBE_FAILED,
+                    "AddPropertyChangedEventHandler failed: 0x" + Integer.toHexString(hr));
+        }
+        return () -> {
+            int removed = UiaComSupport.invoke(owner, REMOVE_PROPERTY_CHANGED_EVENT_HANDLER, rawElement, handler.pointer);
+            LogUtil.debug("RemovePropertyChangedEventHandler  result: " + removed);
+            UiaComSupport.release(rawElement);
+            // UIAutomation 可能仍持有引用或有事件在途，对象在它 Release 到 0 之前继续由 LIVE 固定
+            handler.release();
+        };
+    }
+
+    @Override
+    public String currentName(Element element) {
+        try {
+            return element.getName();
+        } catch (AutomationException e) {
+            throw new UIAutomationSwitcherException(ErrorCode.EVENT_SUBSCRIBE_FAILED,
+                    "Failed to read element name", e);
+        }
+    }
+
+    /**
+     * 用 JNA 回调拼出来的 IUIAutomationPropertyChangedEventHandler COM 对象
+     * <p>
+     * 对象内存和回调由 Java 持有，引用计数归零前放在 {@link #LIVE} 里防止被回收；UIAutomation 在自己的线程上回调。
+     * 初始的一个引用属于订阅，关闭订阅时释放。
+     */
+    private static class PropertyChangedHandler {
+        // 引用计数尚未归零的对象，UIAutomation 仍可能调用它们的虚表
+        private static final Set<PropertyChangedHandler> LIVE = ConcurrentHashMap.newKeySet();
+
+        private final Pointer pointer;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+        // 回调必须被强引用，否则会被 GC 回收导致原生侧崩溃
+        private final QueryInterfaceCallback queryInterface;
+        private final RefCallback addRef;
+        private final RefCallback release;
+        private final HandleCallback handle;
+        private final Memory vTable;
+
+        PropertyChangedHandler(Consumer<String> onNameChanged) {
+            queryInterface = (self, riid, ppv) -> {
+                Guid.GUID iid = new Guid.GUID(riid);
+                if (iid.equals(IID_IUnknown) || iid.equals(IID_IUIAutomationPropertyChangedEventHandler)) {
+                    ppv.setPointer(0, self);
+                    refCount.incrementAndGet();
+                    return 0;
+                }
+                ppv.setPointer(0, Pointer.NULL);
+                return E_NOINTERFACE;
+            };
+            addRef = self -> refCount.incrementAndGet();
+            release = self -> release();
+            handle = (self, sender, propertyId, newValue) -> {
+                if (propertyId == UIA_NAME_PROPERTY_ID && newValue != null
+                        && newValue.getShort(0) == VT_BSTR) {
+                    Pointer bstr = newValue.getPointer(8);
+                    onNameChanged.accept(bstr == null ? null : bstr.getWideString(0));
+                }
+                return 0;
+            };
+
+            vTable = new Memory(4L * Native.POINTER_SIZE);
+            vTable.setPointer(0, CallbackReference.getFunctionPointer(queryInterface));
+            vTable.setPointer(Native.POINTER_SIZE, CallbackReference.getFunctionPointer(addRef));
+            vTable.setPointer(2L * Native.POINTER_SIZE, CallbackReference.getFunctionPointer(release));
+            vTable.setPointer(3L * Native.POINTER_SIZE, CallbackReference.getFunctionPointer(handle));
+
+            Memory object = new Memory(Native.POINTER_SIZE);
+            object.setPointer(0, vTable);
+            pointer = object;
+            LIVE.add(this);
+        }
+
+        int release() {
+            int remaining = refCount.decrementAndGet();
+            if (remaining == 0) {
+                LIVE.remove(this);
+            }
+            return remaining;
+        }
+    }
+
+    private interface QueryInterfaceCallback extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer self, Pointer riid, Pointer ppv);
+    }
+
+    private interface RefCallback extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer self);
+    }
+
+    private interface HandleCallback extends StdCallLibrary.StdCallCallback {
+        // x64 下 VARIANT 按值传递时实际传入的是副本地址
+        int invoke(Pointer self, Pointer sender, int propertyId, Pointer newValue);
+    }
+}
@@ -0,0 +1,31 @@
+package inputmethod.switcher.impl.uia;
+
+import mmarquee.automation.Element;
+
+import java.util.function.Consumer;
+
+/**
+ * 元素 Name 属性变化的订阅层
+ * <p>
+ * 真实实现基于 UIAutomation 的 PropertyChanged 事件；订阅与恢复逻辑只依赖这个接口，可以用替身驱动。
+ */
+public interface NameChangeBinding {
+
+    /**
+     * 订阅元素的 Name 变化
+     *
+     * @param element       托盘输入法按钮
+     * @param onNameChanged Name 变化时回调，可能在任意线程上执行
+     * @return 订阅句柄
+     */
+    Subscription subscribe(Element element, Consumer<String> onNameChanged);
+
+    /**
+     * 读取元素当前的 Name，用于建立订阅时的初始状态
+     */
+    String currentName(Element element);
+
+    interface Subscription {
+        void close();
+    }
+}
@@ -0,0 +1,93 @@
+package inputmethod.switcher.impl.uia;
+
+import enums.InputState;
+import mmarquee.automation.Element;
+import utlis.LogUtil;
+
+import java.util.function.Function;
+
+/**
+ * 推送模式下的输入法状态
+ * <p>
+ * 在托盘输入法按钮上订阅 Name 变化，读取当前状态只是一次 volatile 读。
+ * 订阅的按钮被替换、事件里出现无法识别的 Name 或外部调用 {@link #markStale()} 后，下一次读取时重新订阅。
+ */
+public class PushStateTracker {
+    private final NameChangeBinding binding;
+    private final Function<String, InputState> classifier;
+
+    // 由 UIAutomation 回调线程写入
+    private volatile InputState state = InputState.NONE;
+    private volatile boolean stale = true;
+    // 每次重新订阅加一，旧订阅上迟到的事件据此丢弃
+    private volatile int generation;
+
+    // 以下字段只在切换线程上读写
+    private NameChangeBinding.Subscription subscription;
+    private Element subscribedElement;
+
+    public PushStateTracker(NameChangeBinding binding, Function<String, InputState> classifier) {
+        this.binding = binding;
+        this.classifier = classifier;
+    }
+
+    /**
+     * 读取推送维护的状态，订阅失效时先在 element 上重新订阅
+     *
+     * @param element 当前有效的托盘输入法按钮
+     * @return 当前状态，无法识别时返回 {@link InputState#NONE}
+     */
+    public InputState current(Element element) {
+        if (!stale && element == subscribedElement) {
+            return state;
+        }
+        resubscribe(element);
+        return state;
+    }
+
+    /**
+     * 元素可能已失效（例如资源管理器重启），关闭订阅并在下一次读取时重建
+     */
+    public void markStale() {
+        stale = true;
+        generation++;
+        closeSubscription();
+        state = InputState.NONE;
+    }
+
+    private void resubscribe(Element element) {
+        closeSubscription();
+        int current = ++generation;
+        subscription = binding.subscribe(element, name -> {
+            if (current == generation) {
+                onNameChanged(name);
+            }
+        });
+        subscribedElement = element;
+        state = classifier.apply(binding.currentName(element));
+        stale = state == InputState.NONE;
+        LogUtil.debug("UIAutomation  Name 订阅已建立，初始状态：" + state);
+    }
+
+    private void onNameChanged(String name) {
+        InputState newState = classifier.apply(name);
+        if (newState == InputState.NONE) {
+            // 按钮已不再是输入指示器，交给切换线程在下一次读取时重建
+            stale = true;
+        }
+        state = newState;
+    }
+
+    private void closeSubscription() {
+        if (subscription == null) {
+            return;
+        }
+        try {
+            subscription.close();
+        } catch (RuntimeException e) {
+            LogUtil.warn("Failed  to close name subscription: " + e.getMessage());
+        }
+        subscription = null;
+        subscribedElement = null;
+    }
+}
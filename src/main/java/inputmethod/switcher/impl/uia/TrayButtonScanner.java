@@ -0,0 +1,191 @@
+package inputmethod.switcher.impl.uia;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.OaIdl;
+import com.sun.jna.platform.win32.OleAuto;
+import com.sun.jna.platform.win32.Variant;
+import com.sun.jna.platform.win32.WTypes;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.ErrorCode;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.UIAutomationSwitcherException;
+import mmarquee.automation.Element;
+import mmarquee.uiautomation.IUIAutomationElementConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 CacheRequest 的托盘按钮扫描
+ * <p>
+ * FindAllBuildCache 在一次跨进程调用里把所有按钮的 Name、RuntimeId、AutomationId、ClassName 一起取回，
+ * 之后的识别只读缓存属性，不再逐个按钮调用 getName()。只在切换线程上使用。
+ */
+public class TrayButtonScanner {
+    // IUIAutomation 虚表序号
+    private static final int ELEMENT_FROM_HANDLE = 6;
+    private static final int CREATE_PROPERTY_CONDITION = 23;
+    private static final int CREATE_AND_CONDITION = 25;
+    // IUIAutomationElement
+    private static final int FIND_FIRST_BUILD_CACHE = 7;
+    private static final int FIND_ALL_BUILD_CACHE = 8;
+    private static final int GET_CACHED_PROPERTY_VALUE = 12;
+    private static final int GET_CACHED_NAME = 55;
+    private static final int GET_CACHED_AUTOMATION_ID = 61;
+    private static final int GET_CACHED_CLASS_NAME = 62;
+    // IUIAutomationElementArray
+    private static final int GET_LENGTH = 3;
+    private static final int GET_ELEMENT = 4;
+
+    private static final int TREE_SCOPE_DESCENDANTS = 4;
+
+    private final UiaSession session;
+
+    public TrayButtonScanner(UiaSession session) {
+        this.session = session;
+    }
+
+    /**
+     * 扫描托盘窗口下的所有按钮，返回的每个按钮都持有一个 COM 引用，调用方负责 {@link TrayButton#release()}
+     */
+    public List<TrayButton> scan(WinDef.HWND trayWnd) {
+        Pointer root = rootElement(trayWnd);
+        try {
+            PointerByReference arrayRef = new PointerByReference();
+            UiaComSupport.check(UiaComSupport.invoke(root, FIND_ALL_BUILD_CACHE,
+                            TREE_SCOPE_DESCENDANTS, session.buttonCondition(), session.cacheRequest(), arrayRef),
+                    ErrorCode.BUTTONS_NOT_FOUND, "FindAllBuildCache");
+            Pointer array = UiaComSupport.track(arrayRef.getValue());
+            if (array == null) {
+                return List.of();
+            }
+            try {
+                IntByReference length = new IntByReference();
+                UiaComSupport.invoke(array, GET_LENGTH, length);
+                List<TrayButton> result = new ArrayList<>(length.getValue());
+                for (int i = 0; i < length.getValue(); i++) {
+                    PointerByReference elementRef = new PointerByReference();
+                    if (UiaComSupport.invoke(array, GET_ELEMENT, i, elementRef) >= 0 && elementRef.getValue() != null) {
+                        result.add(toTrayButton(UiaComSupport.track(elementRef.getValue()), i));
+                    }
+                }
+                return result;
+            } finally {
+                UiaComSupport.release(array);
+            }
+        } finally {
+            UiaComSupport.release(root);
+        }
+    }
+
+    /**
+     * 按指纹直接定位按钮：AutomationId（以及 ClassName）精确匹配，FindFirst 命中即返回，不遍历整个托盘
+     *
+     * @return 命中的按钮（持有 COM 引用），未命中返回 null
+     */
+    public TrayButton findFirst(WinDef.HWND trayWnd, String automationId, String className) {
+        Pointer root = rootElement(trayWnd);
+        List<Pointer> conditions = new ArrayList<>();
+        try {
+            Pointer condition = stringCondition(UiaSession.UIA_AUTOMATION_ID_PROPERTY_ID, automationId);
+            conditions.add(condition);
+            if (className != null && !className.isEmpty()) {
+                Pointer classCondition = stringCondition(UiaSession.UIA_CLASS_NAME_PROPERTY_ID, className);
+                conditions.add(classCondition);
+                PointerByReference andRef = new PointerByReference();
+                UiaComSupport.check(UiaComSupport.invoke(session.automation(), CREATE_AND_CONDITION, condition, classCondition, andRef),
+                        ErrorCode.AUTOMATION_CREATE_FAILED, "CreateAndCondition");
+                condition = UiaComSupport.track(andRef.getValue());
+                conditions.add(condition);
+            }
+            PointerByReference elementRef = new PointerByReference();
+            int hr = UiaComSupport.invoke(root, FIND_FIRST_BUILD_CACHE,
+                    TREE_SCOPE_DESCENDANTS, condition, session.cacheRequest(), elementRef);
+            if (hr < 0 || elementRef.getValue() == null) {
+                return null;
+            }
+            return toTrayButton(UiaComSupport.track(elementRef.getValue()), -1);
+        } finally {
+            conditions.forEach(UiaComSupport::release);
+            UiaComSupport.release(root);
+        }
+    }
+
+    private Pointer rootElement(WinDef.HWND trayWnd) {
+        PointerByReference rootRef = new PointerByReference();
+        UiaComSupport.check(UiaComSupport.invoke(session.automation(), ELEMENT_FROM_HANDLE, trayWnd, rootRef),
+                ErrorCode.ELEMENT_FROM_HANDLE_FAILED, "ElementFromHandle");
+        return UiaComSupport.track(rootRef.getValue());
+    }
+
+    private Pointer stringCondition(int propertyId, String value) {
+        Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
+        variant.setValue(Variant.VT_BSTR, OleAuto.INSTANCE.SysAllocString(value));
+        try {
+            PointerByReference conditionRef = new PointerByReference();
+            UiaComSupport.check(UiaComSupport.invoke(session.automation(), CREATE_PROPERTY_CONDITION, propertyId, variant, conditionRef),
+                    ErrorCode.AUTOMATION_CREATE_FAILED, "CreatePropertyCondition");
+            return UiaComSupport.track(conditionRef.getValue());
+        } finally {
+            OleAuto.INSTANCE.VariantClear(variant);
+        }
+    }
+
+    private static TrayButton toTrayButton(Pointer element, int index) {
+        return new TrayButton(element, index, cachedString(element, GET_CACHED_NAME),
+                cachedString(element, GET_CACHED_AUTOMATION_ID), cachedString(element, GET_CACHED_CLASS_NAME),
+                cachedRuntimeId(element));
+    }
+
+    private static String cachedString(Pointer element, int getter) {
+        PointerByReference bstrRef = new PointerByReference();
+        if (UiaComSupport.invoke(element, getter, bstrRef) < 0 || bstrRef.getValue() == null) {
+            return null;
+        }
+        try {
+            return bstrRef.getValue().getWideString(0);
+        } finally {
+            OleAuto.INSTANCE.SysFreeString(new WTypes.BSTR(bstrRef.getValue()));
+        }
+    }
+
+    private static int[] cachedRuntimeId(Pointer element) {
+        Variant.VARIANT.ByReference value = new Variant.VARIANT.ByReference();
+        if (UiaComSupport.invoke(element, GET_CACHED_PROPERTY_VALUE, UiaSession.UIA_RUNTIME_ID_PROPERTY_ID, value) < 0) {
+            return new int[0];
+        }
+        try {
+            if (!(value.getValue() instanceof OaIdl.SAFEARRAY array)) {
+                return new int[0];
+            }
+            int[] runtimeId = new int[array.getUBound(0) - array.getLBound(0) + 1];
+            for (int i = 0; i < runtimeId.length; i++) {
+                runtimeId[i] = ((Number) array.getElement(i)).intValue();
+            }
+            return runtimeId;
+        } finally {
+            OleAuto.INSTANCE.VariantClear(value);
+        }
+    }
+
+    /**
+     * 带缓存属性的托盘按钮
+     *
+     * @param index 在全量扫描结果中的位置，按指纹直接定位时为 -1
+     */
+    public record TrayButton(Pointer element, int index, String name, String automationId, String className,
+                             int[] runtimeId) {
+
+        /**
+         * 转换为 ui-automation 的元素，共用同一个 COM 引用，由 {@link UiaSession} 负责释放
+         */
+        public Element toElement() {
+            return new Element(IUIAutomationElementConverter.pointerToInterface(new PointerByReference(element)));
+        }
+
+        public void release() {
+            UiaComSupport.release(element);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package inputmethod.switcher.impl.uia;
+
+import com.sun.jna.Function;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Guid;
+import com.sun.jna.platform.win32.Ole32;
+import com.sun.jna.platform.win32.WTypes;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.PointerByReference;
+import inputmethod.switcher.SwitchDiagnostics;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.ErrorCode;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.UIAutomationSwitcherException;
+import mmarquee.automation.Element;
+
+/**
+ * 直接按虚表调用 UIAutomation COM 接口的工具方法
+ * <p>
+ * ui-automation 库没有暴露的能力（事件订阅、CacheRequest 等）通过这里访问，只在切换线程上使用。
+ */
+public class UiaComSupport {
+    public static final Guid.CLSID CLSID_CUIAutomation = new Guid.CLSID("{FF48DBA4-60EF-4201-AA87-54103EEF594E}");
+    public static final Guid.IID IID_IUIAutomation = new Guid.IID("{30CBE57D-D9D0-452A-AB13-7AC5AC4825EE}");
+    public static final Guid.IID IID_IUIAutomationElement = new Guid.IID("{D22108AA-8AC5-49A5-837B-37BBB3D7591E}");
+
+    // IUnknown
+    private static final int RELEASE = 2;
+
+    // 私有构造防止实例化
+    private UiaComSupport() {
+    }
+
+    /**
+     * 在当前线程创建一个原始的 IUIAutomation 指针
+     */
+    public static Pointer createAutomation() {
+        // ui-automation 库已经在本线程初始化过 COM 时这里只会返回 S_FALSE
+        Ole32.INSTANCE.CoInitializeEx(null, Ole32.COINIT_APARTMENTTHREADED);
+        PointerByReference pbr = new PointerByReference();
+        WinNT.HRESULT hr = Ole32.INSTANCE.CoCreateInstance(CLSID_CUIAutomation, null,
+                WTypes.CLSCTX_INPROC_SERVER, IID_IUIAutomation, pbr);
+        check(hr.intValue(), ErrorCode.AUTOMATION_CREATE_FAILED, "CoCreateInstance(CUIAutomation)");
+        return track(pbr.getValue());
+    }
+
+    /**
+     * 取出 ui-automation 元素对应的原始 IUIAutomationElement 指针（已 AddRef，用完需 {@link #release}）
+     */
+    public static Pointer rawElement(Element element) {
+        PointerByReference pbr = new PointerByReference();
+        WinNT.HRESULT hr = element.getElement().QueryInterface(new Guid.REFIID(IID_IUIAutomationElement), pbr);
+        check(hr.intValue(), ErrorCode.ELEMENT_FROM_HANDLE_FAILED, "QueryInterface(IUIAutomationElement)");
+        return track(pbr.getValue());
+    }
+
+    /**
+     * 调用接口虚表中第 index 个方法，第一个参数固定为接口指针本身
+     */
+    public static int invoke(Pointer iface, int index, Object... args) {
+        Pointer vTable = iface.getPointer(0);
+        Function f = Function.getFunction(vTable.getPointer((long) index * Native.POINTER_SIZE),
+                Function.ALT_CONVENTION);
+        Object[] callArgs = new Object[args.length + 1];
+        callArgs[0] = iface;
+        System.arraycopy(args, 0, callArgs, 1, args.length);
+        return f.invokeInt(callArgs);
+    }
+
+    /**
+     * 登记一个由插件持有的 COM 引用，计入诊断中的存活引用数
+     */
+    public static Pointer track(Pointer iface) {
+        if (iface != null) {
+            SwitchDiagnostics.comRefAcquired();
+        }
+        return iface;
+    }
+
+    public static void release(Pointer iface) {
+        if (iface != null) {
+            invoke(iface, RELEASE);
+            SwitchDiagnostics.comRefReleased();
+        }
+    }
+
+    public static void check(int hr, ErrorCode errorCode, String operation) {
+        if (hr < 0) {
+            throw new UIAutomationSwitcherException(errorCode,
+                    operation + " failed: 0x" + Integer.toHexString(hr));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package inputmethod.switcher.impl.uia;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Variant;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.ptr.PointerByReference;
+import inputmethod.switcher.impl.WindowsUIAutomationSwitcher.ErrorCode;
+import inputmethod.switcher.impl.uia.TrayButtonScanner.TrayButton;
+import mmarquee.automation.Element;
+import mmarquee.uiautomation.IUIAutomationLegacyIAccessiblePattern;
+import mmarquee.uiautomation.IUIAutomationLegacyIAccessiblePatternConverter;
+
+/**
+ * UIAutomation 会话：集中持有并释放插件创建的 COM 对象
+ * <p>
+ * IUIAutomation 实例、按钮查找条件和 CacheRequest 在会话内只创建一次并复用；
+ * 托盘按钮及绑定在它上面的 LegacyIAccessible 模式在失效时显式 Release。只在切换线程上使用。
+ */
+public class UiaSession {
+    // IUIAutomation 虚表序号
+    private static final int CREATE_CACHE_REQUEST = 20;
+    private static final int CREATE_PROPERTY_CONDITION = 23;
+    // IUIAutomationCacheRequest
+    private static final int ADD_PROPERTY = 3;
+    // IUIAutomationElement
+    private static final int GET_CURRENT_PATTERN = 16;
+
+    static final int UIA_RUNTIME_ID_PROPERTY_ID = 30000;
+    static final int UIA_CONTROL_TYPE_PROPERTY_ID = 30003;
+    static final int UIA_NAME_PROPERTY_ID = 30005;
+    static final int UIA_AUTOMATION_ID_PROPERTY_ID = 30011;
+    static final int UIA_CLASS_NAME_PROPERTY_ID = 30012;
+    private static final int UIA_BUTTON_CONTROL_TYPE_ID = 50000;
+    private static final int UIA_LEGACY_IACCESSIBLE_PATTERN_ID = 10018;
+
+    private Pointer automation;
+    private Pointer buttonCondition;
+    private Pointer cacheRequest;
+
+    // 当前绑定的托盘按钮
+    private Pointer buttonPointer;
+    private Element button;
+    private Pointer legacyPatternPointer;
+    private IUIAutomationLegacyIAccessiblePattern legacyPattern;
+
+    public Pointer automation() {
+        if (automation == null) {
+            automation = UiaComSupport.createAutomation();
+        }
+        return automation;
+    }
+
+    /**
+     * ControlType == Button 条件，创建一次后复用
+     */
+    public Pointer buttonCondition() {
+        if (buttonCondition == null) {
+            Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
+            variant.setValue(Variant.VT_I4, new WinDef.LONG(UIA_BUTTON_CONTROL_TYPE_ID));
+            PointerByReference conditionRef = new PointerByReference();
+            UiaComSupport.check(UiaComSupport.invoke(automation(), CREATE_PROPERTY_CONDITION,
+                            UIA_CONTROL_TYPE_PROPERTY_ID, variant, conditionRef),
+                    ErrorCode.AUTOMATION_CREATE_FAILED, "CreatePropertyCondition");
+            buttonCondition = UiaComSupport.track(conditionRef.getValue());
+        }
+        return buttonCondition;
+    }
+
+    /**
+     * 预取 Name、RuntimeId、AutomationId、ClassName 的 CacheRequest，创建一次后复用
+     */
+    public Pointer cacheRequest() {
+        if (cacheRequest == null) {
+            PointerByReference requestRef = new PointerByReference();
+            UiaComSupport.check(UiaComSupport.invoke(automation(), CREATE_CACHE_REQUEST, requestRef),
+                    ErrorCode.AUTOMATION_CREATE_FAILED, "CreateCacheRequest");
+            Pointer request = UiaComSupport.track(requestRef.getValue());
+            UiaComSupport.invoke(request, ADD_PROPERTY, UIA_NAME_PROPERTY_ID);
+            UiaComSupport.invoke(request, ADD_PROPERTY, UIA_RUNTIME_ID_PROPERTY_ID);
+            UiaComSupport.invoke(request, ADD_PROPERTY, UIA_AUTOMATION_ID_PROPERTY_ID);
+            UiaComSupport.invoke(request, ADD_PROPERTY, UIA_CLASS_NAME_PROPERTY_ID);
+            cacheRequest = request;
+        }
+        return cacheRequest;
+    }
+
+    /**
+     * 当前绑定的托盘按钮，未绑定时返回 null
+     */
+    public Element button() {
+        return button;
+    }
+
+    /**
+     * 绑定新的托盘按钮，按钮持有的 COM 引用转交给会话
+     */
+    public Element bindButton(TrayButton trayButton) {
+        invalidateButton();
+        buttonPointer = trayButton.element();
+        button = trayButton.toElement();
+        return button;
+    }
+
+    /**
+     * 绑定在当前按钮上的 LegacyIAccessible 模式，首次使用时获取，之后每次点击复用
+     */
+    public IUIAutomationLegacyIAccessiblePattern legacyPattern() {
+        if (legacyPattern == null) {
+            PointerByReference patternRef = new PointerByReference();
+            UiaComSupport.check(UiaComSupport.invoke(buttonPointer, GET_CURRENT_PATTERN,
+                            UIA_LEGACY_IACCESSIBLE_PATTERN_ID, patternRef),
+                    ErrorCode.BUTTON_INVOKE_FAILED, "GetCurrentPattern(LegacyIAccessible)");
+            legacyPatternPointer = UiaComSupport.track(patternRef.getValue());
+            legacyPattern = IUIAutomationLegacyIAccessiblePatternConverter.pointerToInterface(patternRef);
+        }
+        return legacyPattern;
+    }
+
+    /**
+     * 按钮失效（资源管理器重启、调用失败等）时释放按钮和模式
+     */
+    public void invalidateButton() {
+        UiaComSupport.release(legacyPatternPointer);
+        legacyPatternPointer = null;
+        legacyPattern = null;
+        UiaComSupport.release(buttonPointer);
+        buttonPointer = null;
+        button = null;
+    }
+
+    /**
+     * 释放会话持有的全部 COM 对象
+     */
+    public void close() {
+        invalidateButton();
+        UiaComSupport.release(cacheRequest);
+        cacheRequest = null;
+        UiaComSupport.release(buttonCondition);
+        buttonCondition = null;
+        UiaComSupport.release(automation);
+        automation = null;
+    }
+}
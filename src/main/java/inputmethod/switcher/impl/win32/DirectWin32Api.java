@@ -0,0 +1,71 @@
+package inputmethod.switcher.impl.win32;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.win32.W32APIOptions;
+
+/**
+ * 基于 JNA 直接映射（Native.register）的实现
+ * <p>
+ * 调用直接绑定到 native 方法，不经过接口代理的反射分派和参数数组装箱。
+ * 直接映射不支持结构体数组参数，SendInput 以首地址传入。
+ */
+class DirectWin32Api implements Win32Api {
+
+    private static final class User32 {
+        static {
+            Native.register(NativeLibrary.getInstance("user32", W32APIOptions.DEFAULT_OPTIONS));
+        }
+
+        static native HWND GetForegroundWindow();
+
+        static native HWND FindWindow(String lpClassName, String lpWindowName);
+
+        static native long SendMessage(HWND hWnd, int Msg, long wParam, long lParam);
+
+        static native int SendInput(int nInputs, Pointer pInputs, int cbSize);
+    }
+
+    private static final class Imm32 {
+        static {
+            Native.register("imm32");
+        }
+
+        static native HWND ImmGetDefaultIMEWnd(HWND hWnd);
+    }
+
+    /**
+     * 触发两个库的注册，失败时抛出 LinkageError
+     */
+    DirectWin32Api() {
+        User32.GetForegroundWindow();
+        Imm32.ImmGetDefaultIMEWnd(null);
+    }
+
+    @Override
+    public HWND getForegroundWindow() {
+        return User32.GetForegroundWindow();
+    }
+
+    @Override
+    public HWND findWindow(String className, String windowName) {
+        return User32.FindWindow(className, windowName);
+    }
+
+    @Override
+    public long sendMessage(HWND hWnd, int msg, long wParam, long lParam) {
+        return User32.SendMessage(hWnd, msg, wParam, lParam);
+    }
+
+    @Override
+    public int sendInput(int count, Pointer inputs, int size) {
+        return User32.SendInput(count, inputs, size);
+    }
+
+    @Override
+    public HWND immGetDefaultIMEWnd(HWND hWnd) {
+        return Imm32.ImmGetDefaultIMEWnd(hWnd);
+    }
+}
@@ -0,0 +1,57 @@
+package inputmethod.switcher.impl.win32;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.win32.StdCallLibrary;
+import com.sun.jna.win32.W32APIOptions;
+
+/**
+ * 基于 JNA 接口代理的实现，直接映射不可用时的回退
+ */
+class ProxyWin32Api implements Win32Api {
+
+    interface User32 extends StdCallLibrary {
+        User32 INSTANCE = Native.load("user32", User32.class, W32APIOptions.DEFAULT_OPTIONS);
+
+        HWND GetForegroundWindow();
+
+        HWND FindWindow(String lpClassName, String lpWindowName);
+
+        long SendMessage(HWND hWnd, int Msg, long wParam, long lParam);
+
+        int SendInput(int nInputs, Pointer pInputs, int cbSize);
+    }
+
+    interface Imm32 extends Library {
+        Imm32 INSTANCE = Native.load("imm32", Imm32.class);
+
+        HWND ImmGetDefaultIMEWnd(HWND hWnd);
+    }
+
+    @Override
+    public HWND getForegroundWindow() {
+        return User32.INSTANCE.GetForegroundWindow();
+    }
+
+    @Override
+    public HWND findWindow(String className, String windowName) {
+        return User32.INSTANCE.FindWindow(className, windowName);
+    }
+
+    @Override
+    public long sendMessage(HWND hWnd, int msg, long wParam, long lParam) {
+        return User32.INSTANCE.SendMessage(hWnd, msg, wParam, lParam);
+    }
+
+    @Override
+    public int sendInput(int count, Pointer inputs, int size) {
+        return User32.INSTANCE.SendInput(count, inputs, size);
+    }
+
+    @Override
+    public HWND immGetDefaultIMEWnd(HWND hWnd) {
+        return Imm32.INSTANCE.ImmGetDefaultIMEWnd(hWnd);
+    }
+}
@@ -0,0 +1,47 @@
+package inputmethod.switcher.impl.win32;
+
+import utlis.LogUtil;
+
+/**
+ * 选择 Win32 调用的底层实现
+ * <p>
+ * 默认使用 JNA 直接映射，可通过 -Dkeyswitch.win32.bridge=proxy 切回接口代理；直接映射注册失败时自动回退。
+ */
+public class Win32 {
+    public static final String BRIDGE_PROPERTY = "keyswitch.win32.bridge";
+
+    private static volatile Win32Api api;
+
+    // 私有构造防止实例化
+    private Win32() {
+    }
+
+    public static Win32Api api() {
+        Win32Api current = api;
+        if (current == null) {
+            synchronized (Win32.class) {
+                current = api;
+                if (current == null) {
+                    current = create();
+                    api = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Win32Api create() {
+        if ("proxy".equalsIgnoreCase(System.getProperty(BRIDGE_PROPERTY))) {
+            LogUtil.info("Win32 bridge: proxy");
+            return new ProxyWin32Api();
+        }
+        try {
+            Win32Api direct = new DirectWin32Api();
+            LogUtil.info("Win32 bridge: direct");
+            return direct;
+        } catch (LinkageError e) {
+            LogUtil.warn("Win32 直接映射不可用，回退到接口代理: " + e.getMessage());
+            return new ProxyWin32Api();
+        }
+    }
+}
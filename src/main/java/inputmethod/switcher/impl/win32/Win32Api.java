@@ -0,0 +1,25 @@
+package inputmethod.switcher.impl.win32;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+
+/**
+ * 切换引擎用到的 Win32 调用
+ * <p>
+ * 通过 {@link Win32#api()} 获取，底层可以是 JNA 接口代理或直接映射。
+ */
+public interface Win32Api {
+    HWND getForegroundWindow();
+
+    HWND findWindow(String className, String windowName);
+
+    long sendMessage(HWND hWnd, int msg, long wParam, long lParam);
+
+    /**
+     * @param inputs 连续存放的 INPUT 结构数组首地址
+     * @return 成功注入的事件数
+     */
+    int sendInput(int count, Pointer inputs, int size);
+
+    HWND immGetDefaultIMEWnd(HWND hWnd);
+}
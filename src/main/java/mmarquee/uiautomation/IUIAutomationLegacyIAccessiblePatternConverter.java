@@ -16,6 +16,7 @@
 package mmarquee.uiautomation;
 
 import com.sun.jna.Function;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.Guid;
 import com.sun.jna.platform.win32.WTypes;
@@ -23,60 +24,69 @@ import com.sun.jna.platform.win32.WinNT;
 import com.sun.jna.ptr.PointerByReference;
 
 public class IUIAutomationLegacyIAccessiblePatternConverter {
+    // 0-2 IUnknown, 3-25 IUIAutomationLegacyIAccessiblePattern
+    private static final int QUERY_INTERFACE = 0;
+    private static final int ADD_REF = 1;
+    private static final int RELEASE = 2;
+    private static final int DO_DEFAULT_ACTION = 4;
+    private static final int SET_VALUE = 5;
+    private static final int GET_CURRENT_NAME = 7;
+
     public static IUIAutomationLegacyIAccessiblePattern pointerToInterface
             (final PointerByReference ptr) {
 
-        final int METHODS = 26; // 0-2 IUnknown,
-                                // 3-25 IUIAutomationLegacyIAccessiblePattern
-
         final Pointer interfacePointer = ptr.getValue();
         final Pointer vTablePointer = interfacePointer.getPointer(0);
-        final Pointer[] vTable = new Pointer[METHODS];
-        vTablePointer.read(0, vTable, 0, vTable.length);
+
+        // 转换时一次性解析用到的虚表项，调用时不再重复 getFunction
+        final Function queryInterface = function(vTablePointer, QUERY_INTERFACE);
+        final Function addRef = function(vTablePointer, ADD_REF);
+        final Function release = function(vTablePointer, RELEASE);
+        final Function doDefaultAction = function(vTablePointer, DO_DEFAULT_ACTION);
+        final Function setValue = function(vTablePointer, SET_VALUE);
+        final Function getCurrentName = function(vTablePointer, GET_CURRENT_NAME);
+
+        // 只含接口指针的参数数组不会被修改（JNA 调用时会复制参数），无参方法共用同一个
+        final Object[] selfArgs = new Object[]{interfacePointer};
+
         return new IUIAutomationLegacyIAccessiblePattern() {
             // IUnknown
             @Override
             public WinNT.HRESULT QueryInterface(Guid.REFIID byValue,
                                                 PointerByReference pbr) {
-                Function f = Function.getFunction(vTable[0],
-                        Function.ALT_CONVENTION);
-                return new WinNT.HRESULT(f.invokeInt(
+                return new WinNT.HRESULT(queryInterface.invokeInt(
                         new Object[]{interfacePointer,
                                 byValue, pbr}));
             }
 
             @Override
             public int AddRef() {
-                Function f = Function.getFunction(vTable[1],
-                        Function.ALT_CONVENTION);
-                return f.invokeInt(new Object[]{interfacePointer});
+                return addRef.invokeInt(selfArgs);
             }
             @Override
             public int Release() {
-                Function f = Function.getFunction(vTable[2],
-                        Function.ALT_CONVENTION);
-                return f.invokeInt(new Object[]{interfacePointer});
+                return release.invokeInt(selfArgs);
             }
 
             @Override
             public int doDefaultAction() {
-                Function f = Function.getFunction(vTable[4],  Function.ALT_CONVENTION);
-                return f.invokeInt(new  Object[]{interfacePointer});
+                return doDefaultAction.invokeInt(selfArgs);
             }
 
             @Override
             public int setValue(WTypes.BSTR sr) {
-                Function f = Function.getFunction(vTable[5],
-                        Function.ALT_CONVENTION);
-                return f.invokeInt(new Object[]{interfacePointer, sr});
+                return setValue.invokeInt(new Object[]{interfacePointer, sr});
             }
 
             @Override
             public int getCurrentName(PointerByReference pszName) {
-                Function f = Function.getFunction(vTable[7],
-                        Function.ALT_CONVENTION);
-                return f.invokeInt(new Object[]{interfacePointer, pszName});
+                return getCurrentName.invokeInt(new Object[]{interfacePointer, pszName});
             }
         };
     }
+
+    private static Function function(Pointer vTablePointer, int index) {
+        return Function.getFunction(vTablePointer.getPointer((long) index * Native.POINTER_SIZE),
+                Function.ALT_CONVENTION);
+    }
 }
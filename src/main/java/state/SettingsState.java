@@ -6,6 +6,7 @@ import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.ui.JBColor;
 import enums.InputState;
+import enums.MultiCaretPolicy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -27,6 +28,27 @@ public class SettingsState implements PersistentStateComponent<SettingsState> {
     // 气泡框配置
     public Integer balloonDuration = 500;
 
+    // UIAutomation 推送模式：订阅托盘按钮 Name 变化，不再轮询
+    public boolean uiaPushMode = false;
+
+    // 输入法状态查询的截止时间（毫秒），超时后命令等查询完成再重新投递
+    public int queryDeadlineMs = 5;
+
+    // 光标位于注释/字符串中时的目标输入法，NONE 表示按前一个字符判断
+    public InputState commentInputState = InputState.NONE;
+    public InputState stringInputState = InputState.NONE;
+
+    // 判断前一个字符时跳过的透明字符，以及最多查看的字符数
+    public String transparentChars = " \t0123456789,.;:!?'\"()[]<>-";
+    public int lookAroundWindow = 8;
+
+    // 日文假名、韩文谚文是否也按中文（输入法）状态处理
+    public boolean kanaAsNative = false;
+    public boolean hangulAsNative = false;
+
+    // 多光标时按主光标还是多数光标决定目标输入法
+    public MultiCaretPolicy multiCaretPolicy = MultiCaretPolicy.PRIMARY;
+
 //    public InputState editorInputState = InputState.ENGLISH;
 //    public InputState renameDialogInputState = InputState.ENGLISH;
 //    public InputState terminalInputState = InputState.ENGLISH;
@@ -57,6 +79,15 @@ public class SettingsState implements PersistentStateComponent<SettingsState> {
         this.inputSwitchStrategyClass = state.inputSwitchStrategyClass;
         this.switchingStrategyClass = state.switchingStrategyClass;
         this.balloonDuration = state.balloonDuration;
+        this.uiaPushMode = state.uiaPushMode;
+        this.queryDeadlineMs = state.queryDeadlineMs;
+        this.commentInputState = state.commentInputState;
+        this.stringInputState = state.stringInputState;
+        this.transparentChars = state.transparentChars;
+        this.lookAroundWindow = state.lookAroundWindow;
+        this.kanaAsNative = state.kanaAsNative;
+        this.hangulAsNative = state.hangulAsNative;
+        this.multiCaretPolicy = state.multiCaretPolicy;
 
 //        this.editorInputState = state.editorInputState;
 //        this.renameDialogInputState = state.renameDialogInputState;
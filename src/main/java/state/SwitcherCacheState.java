@@ -0,0 +1,56 @@
+package state;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.RoamingType;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 切换引擎的运行时缓存（跨会话保存，不在设置页面展示）
+ */
+@State(
+        name = "KeySwitchCache",
+        storages = @Storage(value = "KeySwitchCache.xml", roamingType = RoamingType.DISABLED)
+)
+public class SwitcherCacheState implements PersistentStateComponent<SwitcherCacheState> {
+    // 托盘输入法按钮指纹：AutomationId/ClassName 用于直接定位，位置用于全量扫描时优先检查
+    public int trayButtonIndex = -1;
+    public String trayButtonAutomationId = "";
+    public String trayButtonClassName = "";
+
+    // 自动策略的引擎排名，格式：引擎名=成功率/p50/p99，逗号分隔，排名靠前的在前
+    public String autoSwitcherRanking = "";
+
+    @Nullable
+    @Override
+    public SwitcherCacheState getState() {
+        return this;
+    }
+
+    @Override
+    public void loadState(@NotNull SwitcherCacheState state) {
+        this.trayButtonIndex = state.trayButtonIndex;
+        this.trayButtonAutomationId = state.trayButtonAutomationId;
+        this.trayButtonClassName = state.trayButtonClassName;
+        this.autoSwitcherRanking = state.autoSwitcherRanking;
+    }
+
+    public boolean hasTrayButtonFingerprint() {
+        return trayButtonAutomationId != null && !trayButtonAutomationId.isEmpty();
+    }
+
+    /**
+     * 指纹定位失效时只清除 AutomationId/ClassName，位置保留给随后的全量扫描优先检查
+     */
+    public void clearTrayButtonFingerprint() {
+        trayButtonAutomationId = "";
+        trayButtonClassName = "";
+    }
+
+    public static SwitcherCacheState getInstance() {
+        return ApplicationManager.getApplication().getService(SwitcherCacheState.class);
+    }
+}
@@ -1,12 +1,16 @@
 package view
 
 import com.intellij.ide.BrowserUtil
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ModalityState
 import com.intellij.openapi.options.Configurable
 import com.intellij.openapi.ui.ComboBox
 import com.intellij.openapi.ui.Messages
 import com.intellij.openapi.ui.ValidationInfo
 import com.intellij.openapi.ui.ComponentValidator
 import com.intellij.openapi.util.Disposer
+import inputmethod.switcher.InputStateCache
+import inputmethod.switcher.SwitchExecutorService
 import inputmethod.switcher.SwitcherStrategyFactory
 import java.awt.Component
 import java.awt.Dimension
@@ -21,6 +25,7 @@ import javax.swing.JComponent
 import com.intellij.util.ui.JBUI
 import editoraction.FocusHandel.FocusArea
 import enums.InputState
+import enums.MultiCaretPolicy
 import state.SettingsState
 import java.awt.Cursor
 import java.awt.event.KeyAdapter
@@ -35,6 +40,15 @@ class PluginSettingsConfigurable() : Configurable {
 
     private var inputSwitchStrategyComboBox: JComboBox<String>? = null
     private var switchingStrategyComboBox: JComboBox<String>? = null
+    private var uiaPushModeCheckBox: JCheckBox? = null
+    private var queryDeadlineField: JBTextField? = null
+    private var commentStateComboBox: JComboBox<InputState>? = null
+    private var stringStateComboBox: JComboBox<InputState>? = null
+    private var transparentCharsField: JBTextField? = null
+    private var lookAroundWindowField: JBTextField? = null
+    private var kanaAsNativeCheckBox: JCheckBox? = null
+    private var hangulAsNativeCheckBox: JCheckBox? = null
+    private var multiCaretPolicyComboBox: JComboBox<MultiCaretPolicy>? = null
 
 //    private var editorComboBox: JComboBox<InputState>? = null
 //    private var renameDialogComboBox: JComboBox<InputState>? = null
@@ -56,10 +70,12 @@ class PluginSettingsConfigurable() : Configurable {
                     label(switchLabel)
                     cell(
                         createStrategyComboBox(
-                            items = arrayOf("UIAutomationSwitcher", "KeyboardSwitcher"),
+                            items = arrayOf("UIAutomationSwitcher", "KeyboardSwitcher", "ImeControlSwitcher", "AutoSwitcher"),
                             displayMap = mapOf(
                                 "UIAutomationSwitcher" to "UIAutomation模拟点击托盘输入法按钮(默认)",
-                                "KeyboardSwitcher" to "shift快捷键(兼容性好，可能误触发事件)"
+                                "KeyboardSwitcher" to "shift快捷键(兼容性好，可能误触发事件)",
+                                "ImeControlSwitcher" to "IME消息直接设置中英文(无按键无点击，部分输入法不支持)",
+                                "AutoSwitcher" to "自动选择(首次启动测速排名，失败自动换用下一种)"
                             ),
                             selected = state.inputSwitchStrategyClass!!
                         )
@@ -68,6 +84,76 @@ class PluginSettingsConfigurable() : Configurable {
                     }
                     cell(createTestButton("测试输入法切换") { inputSwitch() })
                 }
+                row {
+                    cell(JCheckBox("UIAutomation推送模式(订阅托盘按钮变化，不再轮询)").apply {
+                        uiaPushModeCheckBox = this
+                        isSelected = state.uiaPushMode
+                    })
+                }
+                row {
+                    label("状态查询超时(ms):")
+                    cell(JBTextField().apply {
+                        queryDeadlineField = this
+                        text = state.queryDeadlineMs.toString()
+                        columns = 4
+                        toolTipText = "超时后不再等待查询结果，查询完成后再按最新状态处理最后一次切换请求"
+                    })
+                }
+            }
+
+            group("语境设置") {
+                row {
+                    label("注释中:")
+                    cell(createContextStateComboBox(state.commentInputState)).applyToComponent {
+                        commentStateComboBox = this
+                    }
+                }
+                row {
+                    label("字符串中:")
+                    cell(createContextStateComboBox(state.stringInputState)).applyToComponent {
+                        stringStateComboBox = this
+                    }
+                }
+                row {
+                    label("跳过的字符:")
+                    cell(JBTextField().apply {
+                        transparentCharsField = this
+                        text = state.transparentChars
+                        columns = 20
+                        toolTipText = "判断前一个字符时跳过这些字符（如空格、数字、标点），避免在中文句子里被切回英文"
+                    })
+                    label("最多查看:")
+                    cell(JBTextField().apply {
+                        lookAroundWindowField = this
+                        text = state.lookAroundWindow.toString()
+                        columns = 3
+                    })
+                }
+                row {
+                    cell(JCheckBox("日文假名按中文处理").apply {
+                        kanaAsNativeCheckBox = this
+                        isSelected = state.kanaAsNative
+                    })
+                    cell(JCheckBox("韩文按中文处理").apply {
+                        hangulAsNativeCheckBox = this
+                        isSelected = state.hangulAsNative
+                    })
+                }
+                row {
+                    label("多光标:")
+                    cell(
+                        createStrategyComboBox(
+                            items = arrayOf(MultiCaretPolicy.PRIMARY, MultiCaretPolicy.MAJORITY),
+                            displayMap = mapOf(
+                                MultiCaretPolicy.PRIMARY to MultiCaretPolicy.PRIMARY.name + "(默认)",
+                                MultiCaretPolicy.MAJORITY to MultiCaretPolicy.MAJORITY.name
+                            ),
+                            selected = state.multiCaretPolicy
+                        )
+                    ).applyToComponent {
+                        multiCaretPolicyComboBox = this
+                    }
+                }
             }
 
             group("提示设置") {
@@ -372,11 +458,39 @@ class PluginSettingsConfigurable() : Configurable {
         }
     }
 
+    private fun createContextStateComboBox(selected: InputState): ComboBox<InputState> {
+        return createStrategyComboBox(
+            items = arrayOf(InputState.NONE, InputState.CHINESE, InputState.ENGLISH),
+            displayMap = mapOf(
+                InputState.NONE to "按前一个字符判断(默认)",
+                InputState.CHINESE to InputState.CHINESE.name,
+                InputState.ENGLISH to InputState.ENGLISH.name
+            ),
+            selected = selected
+        )
+    }
+
     private fun inputSwitch() {
         try {
             val strategyName = inputSwitchStrategyComboBox!!.selectedItem as String
             val strategy = SwitcherStrategyFactory.createStrategy(strategyName)
-            strategy.change()
+            // 设置对话框是模态的，结果需按当前模态状态回到 EDT 才能及时提示
+            val modalityState = ModalityState.current()
+            // 原生调用统一在切换线程执行
+            SwitchExecutorService.getInstance().execute {
+                val error = try {
+                    if (strategy.change()) null else "切换未生效"
+                } catch (ex: Exception) {
+                    ex.message ?: ex.javaClass.simpleName
+                } finally {
+                    InputStateCache.invalidate("测试切换")
+                }
+                if (error != null) {
+                    ApplicationManager.getApplication().invokeLater({
+                        Messages.showErrorDialog("   切换失败: $error", "操作异常")
+                    }, modalityState)
+                }
+            }
         } catch (ex: Exception) {
             Messages.showErrorDialog("   切换失败: ${ex.message}", "操作异常")
         }
@@ -388,6 +502,15 @@ class PluginSettingsConfigurable() : Configurable {
         }
         return !Objects.equals(inputSwitchStrategyComboBox!!.selectedItem, state.inputSwitchStrategyClass) ||
                 !Objects.equals(switchingStrategyComboBox!!.selectedItem, state.switchingStrategyClass) ||
+                uiaPushModeCheckBox!!.isSelected != state.uiaPushMode ||
+                queryDeadlineField?.text != state.queryDeadlineMs.toString() ||
+                commentStateComboBox!!.selectedItem != state.commentInputState ||
+                stringStateComboBox!!.selectedItem != state.stringInputState ||
+                transparentCharsField?.text != state.transparentChars ||
+                lookAroundWindowField?.text != state.lookAroundWindow.toString() ||
+                kanaAsNativeCheckBox!!.isSelected != state.kanaAsNative ||
+                hangulAsNativeCheckBox!!.isSelected != state.hangulAsNative ||
+                multiCaretPolicyComboBox!!.selectedItem != state.multiCaretPolicy ||
 
 //                !Objects.equals(editorComboBox!!.selectedItem, state.editorInputState) ||
 //                !Objects.equals(renameDialogComboBox!!.selectedItem, state.renameDialogInputState) ||
@@ -403,7 +526,17 @@ class PluginSettingsConfigurable() : Configurable {
 
     override fun apply() {
         state.inputSwitchStrategyClass = inputSwitchStrategyComboBox!!.selectedItem as String
+        InputStateCache.invalidate("切换策略变更")
         state.switchingStrategyClass = switchingStrategyComboBox!!.selectedItem as String
+        state.uiaPushMode = uiaPushModeCheckBox!!.isSelected
+        state.queryDeadlineMs = queryDeadlineField?.text?.toIntOrNull()?.coerceIn(1, 1000) ?: state.queryDeadlineMs
+        state.commentInputState = commentStateComboBox!!.selectedItem as InputState
+        state.stringInputState = stringStateComboBox!!.selectedItem as InputState
+        state.transparentChars = transparentCharsField?.text ?: state.transparentChars
+        state.lookAroundWindow = lookAroundWindowField?.text?.toIntOrNull()?.coerceIn(1, 64) ?: state.lookAroundWindow
+        state.kanaAsNative = kanaAsNativeCheckBox!!.isSelected
+        state.hangulAsNative = hangulAsNativeCheckBox!!.isSelected
+        state.multiCaretPolicy = multiCaretPolicyComboBox!!.selectedItem as MultiCaretPolicy
 
 //        state.editorInputState = editorComboBox!!.selectedItem as InputState
 //        state.renameDialogInputState = renameDialogComboBox!!.selectedItem as InputState
@@ -425,6 +558,15 @@ class PluginSettingsConfigurable() : Configurable {
     override fun reset() {
         inputSwitchStrategyComboBox!!.selectedItem = state.inputSwitchStrategyClass!!
         switchingStrategyComboBox!!.selectedItem = state.switchingStrategyClass!!
+        uiaPushModeCheckBox!!.isSelected = state.uiaPushMode
+        queryDeadlineField?.text = state.queryDeadlineMs.toString()
+        commentStateComboBox!!.selectedItem = state.commentInputState
+        stringStateComboBox!!.selectedItem = state.stringInputState
+        transparentCharsField?.text = state.transparentChars
+        lookAroundWindowField?.text = state.lookAroundWindow.toString()
+        kanaAsNativeCheckBox!!.isSelected = state.kanaAsNative
+        hangulAsNativeCheckBox!!.isSelected = state.hangulAsNative
+        multiCaretPolicyComboBox!!.selectedItem = state.multiCaretPolicy
 
 //        editorComboBox!!.selectedItem = state.editorInputState!!
 //        renameDialogComboBox!!.selectedItem = state.renameDialogInputState!!
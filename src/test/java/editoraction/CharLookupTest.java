@@ -0,0 +1,97 @@
+package editoraction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link CharLookup} 的代理对处理、窗口边界和回退顺序
+ */
+public class CharLookupTest {
+    private static final TransparentChars DEFAULT = TransparentChars.of(" \t0123456789,.;:!?'\"()[]<>-");
+    private static final TransparentChars NONE = TransparentChars.of("");
+    // U+20000，CJK 扩展 B，占两个 char
+    private static final String EXT_B = new String(Character.toChars(0x20000));
+
+    @Test
+    public void beforeSkipsTransparentChars() {
+        String text = "中文, 12";
+        assertEquals('文', CharLookup.significantBefore(text, text.length(), 8, DEFAULT));
+    }
+
+    @Test
+    public void afterSkipsTransparentChars() {
+        String text = "  (abc";
+        assertEquals('a', CharLookup.significantAfter(text, 0, 8, DEFAULT));
+    }
+
+    @Test
+    public void beforeReadsSurrogatePairAsOneCodePoint() {
+        String text = "a" + EXT_B;
+        assertEquals(0x20000, CharLookup.significantBefore(text, text.length(), 1, NONE));
+        assertEquals(0x20000, CharLookup.codePointBefore(text, text.length()));
+    }
+
+    @Test
+    public void afterReadsSurrogatePairAsOneCodePoint() {
+        String text = EXT_B + "a";
+        assertEquals(0x20000, CharLookup.significantAfter(text, 0, 1, NONE));
+    }
+
+    @Test
+    public void windowCountsCodePointsNotChars() {
+        // 两个代理对加一个空格：窗口 3 正好走到 'a'
+        String text = "a" + EXT_B + EXT_B + " ";
+        TransparentChars extB = TransparentChars.of(" " + EXT_B);
+        assertEquals('a', CharLookup.significantBefore(text, text.length(), 4, extB));
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.significantBefore(text, text.length(), 3, extB));
+    }
+
+    @Test
+    public void windowBoundsLookBehind() {
+        String text = "中" + " ".repeat(8);
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.significantBefore(text, text.length(), 8, DEFAULT));
+        assertEquals('中', CharLookup.significantBefore(text, text.length(), 9, DEFAULT));
+    }
+
+    @Test
+    public void windowBoundsLookAhead() {
+        String text = " ".repeat(8) + "中";
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.significantAfter(text, 0, 8, DEFAULT));
+        assertEquals('中', CharLookup.significantAfter(text, 0, 9, DEFAULT));
+    }
+
+    @Test
+    public void outOfRangeOffsetsAreClamped() {
+        String text = "ab";
+        assertEquals('b', CharLookup.significantBefore(text, 10, 8, NONE));
+        assertEquals('a', CharLookup.significantAfter(text, -3, 8, NONE));
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.codePointBefore(text, 0));
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.codePointBefore(text, 3));
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.significantBefore("", 0, 8, NONE));
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.significantAfter("", 0, 8, NONE));
+    }
+
+    @Test
+    public void contextPrefersLookBehind() {
+        String text = "中 |a";
+        assertEquals('中', CharLookup.contextCodePoint(text, 2, 8, DEFAULT));
+    }
+
+    @Test
+    public void contextFallsBackToLookAhead() {
+        String text = "  , 中";
+        assertEquals('中', CharLookup.contextCodePoint(text, 2, 8, DEFAULT));
+    }
+
+    @Test
+    public void contextFallsBackToAdjacentChar() {
+        String text = "1, 2";
+        assertEquals(',', CharLookup.contextCodePoint(text, 2, 8, DEFAULT));
+    }
+
+    @Test
+    public void contextAtDocumentStartWithNothingSignificant() {
+        assertEquals(CharLookup.NOT_FOUND, CharLookup.contextCodePoint("   ", 0, 8, DEFAULT));
+    }
+}
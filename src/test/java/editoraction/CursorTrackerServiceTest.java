@@ -0,0 +1,52 @@
+package editoraction;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+/**
+ * 光标事件防抖的回归测试：大量光标移动后调度器和 Disposer 树都不应增长
+ */
+public class CursorTrackerServiceTest extends BasePlatformTestCase {
+    private static final int MOVES = 10_000;
+
+    public void testCaretMovesKeepSchedulerAndDisposerTreeFlat() {
+        myFixture.configureByText("a.txt", "abc 中文 def\n".repeat(200));
+        CursorTrackerService service = new CursorTrackerService();
+        Disposer.register(getTestRootDisposable(), service);
+        Editor editor = myFixture.getEditor();
+
+        try {
+            // 先跑一轮，让首次光标事件需要的子节点都已注册
+            moveCaret(editor, MOVES / 10);
+            int before = disposerChildren(service);
+            moveCaret(editor, MOVES);
+
+            assertTrue("pending caret requests: " + service.pendingCaretRequests(),
+                    service.pendingCaretRequests() <= 1);
+            // 原来每次光标事件新建一个 Alarm 并挂在服务下，1 万次移动会留下 1 万个 Disposer 子节点
+            assertEquals(before, disposerChildren(service));
+        } finally {
+            // 在测试框架派发剩余事件之前取消延迟判断，测试里不触发真实的输入法切换
+            Disposer.dispose(service);
+        }
+    }
+
+    private static void moveCaret(Editor editor, int times) {
+        int length = editor.getDocument().getTextLength();
+        for (int i = 0; i < times; i++) {
+            editor.getCaretModel().moveToOffset((i * 7) % length);
+        }
+    }
+
+    // 逐个访问直接子节点计数，谓词返回 false，不释放任何子节点
+    private static int disposerChildren(Disposable parent) {
+        int[] count = {0};
+        Disposer.disposeChildren(parent, child -> {
+            count[0]++;
+            return false;
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,133 @@
+package editoraction;
+
+import enums.InputState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * 逐个码点校验 {@link ScriptTable}：两级表与区间定义一致，覆盖所有汉字和原来的三个 Unicode 块
+ */
+public class ScriptTableTest {
+    // 与 ScriptTable.cjk 的区间独立维护，两级表压缩出错时逐码点比对能发现
+    private static final int[][] CHINESE = {
+            {0x2E80, 0x2FDF}, {0x2FF0, 0x303F}, {0x3100, 0x312F}, {0x31A0, 0x31EF}, {0x3200, 0x33FF},
+            {0x3400, 0x4DBF}, {0x4E00, 0x9FFF}, {0xF900, 0xFAFF}, {0xFE30, 0xFE4F}, {0xFF00, 0xFFEF},
+            {0x16FE0, 0x16FFF}, {0x20000, 0x3FFFF},
+    };
+    private static final int[][] KANA = {{0x3040, 0x30FF}, {0x31F0, 0x31FF}, {0x1AFF0, 0x1B16F}, {0x1F200, 0x1F200}};
+    private static final int[][] HANGUL = {{0x1100, 0x11FF}, {0x3130, 0x318F}, {0xA960, 0xA97F}, {0xAC00, 0xD7FF}};
+
+    @Test
+    public void everyCodePointMatchesRangesForAllSettings() {
+        for (boolean kana : new boolean[]{false, true}) {
+            for (boolean hangul : new boolean[]{false, true}) {
+                ScriptTable table = ScriptTable.cjk(kana, hangul);
+                for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+                    boolean chinese = in(CHINESE, cp) || kana && in(KANA, cp) || hangul && in(HANGUL, cp);
+                    InputState expected = chinese ? InputState.CHINESE : InputState.ENGLISH;
+                    if (table.classify(cp) != expected) {
+                        assertEquals(String.format("U+%04X kana=%b hangul=%b", cp, kana, hangul),
+                                expected, table.classify(cp));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void everyHanCodePointIsChinese() {
+        assertScript(ScriptTable.cjk(false, false), Character.UnicodeScript.HAN);
+    }
+
+    @Test
+    public void kanaAndHangulFollowSettings() {
+        ScriptTable table = ScriptTable.cjk(true, true);
+        assertScript(table, Character.UnicodeScript.HIRAGANA);
+        assertScript(table, Character.UnicodeScript.KATAKANA);
+        assertScript(table, Character.UnicodeScript.HANGUL);
+
+        ScriptTable plain = ScriptTable.cjk(false, false);
+        assertEquals(InputState.ENGLISH, plain.classify('あ'));
+        assertEquals(InputState.ENGLISH, plain.classify('ア'));
+        assertEquals(InputState.ENGLISH, plain.classify('한'));
+    }
+
+    @Test
+    public void oldBlocksAreStillChinese() {
+        ScriptTable table = ScriptTable.cjk(false, false);
+        for (int cp = 0; cp <= Character.MAX_VALUE; cp++) {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of(cp);
+            if (block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                    || block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                    || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS) {
+                if (table.classify(cp) != InputState.CHINESE) {
+                    assertEquals(String.format("U+%04X", cp), InputState.CHINESE, table.classify(cp));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void latinAndOutOfRangeAreEnglish() {
+        ScriptTable table = ScriptTable.cjk(true, true);
+        assertEquals(InputState.ENGLISH, table.classify('a'));
+        assertEquals(InputState.ENGLISH, table.classify(' '));
+        assertEquals(InputState.ENGLISH, table.classify(CharLookup.NOT_FOUND));
+        assertEquals(InputState.ENGLISH, table.classify(Character.MAX_CODE_POINT + 1));
+    }
+
+    @Test
+    public void builderMapsOtherScriptPairs() {
+        // 例如俄文输入法：西里尔字母映射为本地语言状态
+        ScriptTable table = ScriptTable.builder(InputState.ENGLISH)
+                .map(0x0400, 0x04FF, InputState.CHINESE)
+                .map(0x0000, 0x001F, InputState.NONE)
+                .build();
+        assertEquals(InputState.CHINESE, table.classify('Ж'));
+        assertEquals(InputState.ENGLISH, table.classify('Z'));
+        assertEquals(InputState.NONE, table.classify('\n'));
+        assertEquals(InputState.ENGLISH, table.classify('中'));
+    }
+
+    @Test
+    public void laterRangesOverrideEarlierOnes() {
+        ScriptTable table = ScriptTable.builder(InputState.ENGLISH)
+                .map(0x4E00, 0x9FFF, InputState.CHINESE)
+                .map(0x4E00, 0x4E00, InputState.ENGLISH)
+                .build();
+        assertEquals(InputState.ENGLISH, table.classify(0x4E00));
+        assertEquals(InputState.CHINESE, table.classify(0x4E01));
+        assertSame(InputState.CHINESE, table.classify(0x9FFF));
+        assertEquals(InputState.ENGLISH, table.classify(0xA000));
+    }
+
+    @Test
+    public void invalidRangesAreRejected() {
+        ScriptTable.Builder builder = ScriptTable.builder(InputState.ENGLISH);
+        assertThrows(IllegalArgumentException.class, () -> builder.map(-1, 10, InputState.CHINESE));
+        assertThrows(IllegalArgumentException.class, () -> builder.map(10, 9, InputState.CHINESE));
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.map(0, Character.MAX_CODE_POINT + 1, InputState.CHINESE));
+    }
+
+    private static void assertScript(ScriptTable table, Character.UnicodeScript script) {
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            if (Character.isDefined(cp) && Character.UnicodeScript.of(cp) == script
+                    && table.classify(cp) != InputState.CHINESE) {
+                assertEquals(String.format("%s U+%04X", script, cp), InputState.CHINESE, table.classify(cp));
+            }
+        }
+    }
+
+    private static boolean in(int[][] ranges, int cp) {
+        for (int[] range : ranges) {
+            if (cp >= range[0] && cp <= range[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,63 @@
+package editoraction;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import editoraction.TokenContextClassifier.Category;
+
+/**
+ * 按高亮 token 判断光标语境：注释、字符串的边界（每次判断的耗时见 TokenContextClassifierBenchmark）
+ */
+public class TokenContextClassifierTest extends BasePlatformTestCase {
+    private static final String SOURCE = """
+            class A {
+                /* block */ int a;
+                // line comment
+                /**
+                 * doc
+                 */
+                String s = "text";
+            }
+            """;
+
+    public void testBlockCommentEndsAtTerminator() {
+        Editor editor = configure();
+        assertEquals(Category.COMMENT, classifyAfter(editor, "/* blo"));
+        assertEquals(Category.CODE, classifyAfter(editor, "/* block */"));
+    }
+
+    public void testLineCommentContinuesToLineEnd() {
+        Editor editor = configure();
+        assertEquals(Category.COMMENT, classifyAfter(editor, "// line"));
+        assertEquals(Category.COMMENT, classifyAfter(editor, "// line comment"));
+    }
+
+    public void testDocCommentContinuesInsideAndEndsAtTerminator() {
+        Editor editor = configure();
+        assertEquals(Category.COMMENT, classifyAfter(editor, "* doc"));
+        assertEquals(Category.CODE, classifyAfter(editor, "*/"));
+    }
+
+    public void testStringEndsAtClosingQuote() {
+        Editor editor = configure();
+        assertEquals(Category.STRING, classifyAfter(editor, "\"te"));
+        assertEquals(Category.CODE, classifyAfter(editor, "\"text\""));
+    }
+
+    public void testCodeOutsideCommentsAndStrings() {
+        Editor editor = configure();
+        assertEquals(Category.CODE, classifyAfter(editor, "int a"));
+        assertEquals(Category.CODE, TokenContextClassifier.classify(editor, 0));
+    }
+
+    private Editor configure() {
+        myFixture.configureByText("A.java", SOURCE);
+        return myFixture.getEditor();
+    }
+
+    // 取最后一次出现，避免 "*/" 命中前面的块注释
+    private static Category classifyAfter(Editor editor, String text) {
+        int index = SOURCE.lastIndexOf(text);
+        assertTrue("missing " + text, index >= 0);
+        return TokenContextClassifier.classify(editor, index + text.length());
+    }
+}
@@ -0,0 +1,64 @@
+package editoraction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TransparentChars} 的位图、二分查找和解析结果复用
+ */
+public class TransparentCharsTest {
+
+    @Test
+    public void asciiBitmapsCoverBothHalves() {
+        // 0-63 在 low，64-127 在 high
+        TransparentChars chars = TransparentChars.of("\t ,@[~");
+        for (char c : "\t ,@[~".toCharArray()) {
+            assertTrue(String.valueOf((int) c), chars.contains(c));
+        }
+        for (char c : "\n!a{A0".toCharArray()) {
+            assertFalse(String.valueOf((int) c), chars.contains(c));
+        }
+        assertFalse(chars.contains(0));
+        assertFalse(chars.contains(127));
+    }
+
+    @Test
+    public void asciiMatchesConfiguredSetExhaustively() {
+        String source = " \t0123456789,.;:!?'\"()[]<>-";
+        TransparentChars chars = TransparentChars.of(source);
+        for (int c = 0; c < 128; c++) {
+            assertTrue(String.valueOf(c), chars.contains(c) == (source.indexOf(c) >= 0));
+        }
+    }
+
+    @Test
+    public void nonAsciiIncludingSupplementary() {
+        String supplementary = new String(Character.toChars(0x1F600));
+        TransparentChars chars = TransparentChars.of("，。" + supplementary);
+        assertTrue(chars.contains('，'));
+        assertTrue(chars.contains('。'));
+        assertTrue(chars.contains(0x1F600));
+        assertFalse(chars.contains('中'));
+        assertFalse(chars.contains(0x1F601));
+        // 代理对不会拆成两个单独的代理字符
+        assertFalse(chars.contains(supplementary.charAt(0)));
+        assertFalse(chars.contains(supplementary.charAt(1)));
+    }
+
+    @Test
+    public void emptyAndNullContainNothing() {
+        for (TransparentChars chars : new TransparentChars[]{TransparentChars.of(""), TransparentChars.of(null)}) {
+            assertFalse(chars.contains(' '));
+            assertFalse(chars.contains('中'));
+        }
+    }
+
+    @Test
+    public void unchangedSettingReusesParsedSet() {
+        TransparentChars first = TransparentChars.of(" ,");
+        assertSame(first, TransparentChars.of(new String(" ,")));
+    }
+}
@@ -0,0 +1,101 @@
+package inputmethod.switcher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用可推进的时钟驱动 {@link CircuitBreaker} 的状态转换和退避时间
+ */
+public class CircuitBreakerTest {
+    private long now;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        breaker = new CircuitBreaker("test", () -> now);
+    }
+
+    @Test
+    public void failureOpensThenTrialSuccessCloses() {
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure(100);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allowRequest());
+
+        advanceMs(100);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        // 试探期间只放行一次
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void consecutiveFailuresDoubleBackoff() {
+        breaker.onFailure(100);
+        assertOpenForMs(100);
+
+        // HALF_OPEN 试探失败，退避翻倍
+        breaker.onFailure(100);
+        assertOpenForMs(200);
+
+        breaker.onFailure(100);
+        assertOpenForMs(400);
+    }
+
+    @Test
+    public void successResetsBackoff() {
+        breaker.onFailure(100);
+        assertOpenForMs(100);
+        breaker.onFailure(100);
+        assertOpenForMs(200);
+
+        breaker.onSuccess();
+        breaker.onFailure(100);
+        assertOpenForMs(100);
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        breaker.onFailure(40_000);
+        assertOpenForMs(40_000);
+
+        // 翻倍后的 80s 被限制在 60s
+        breaker.onFailure(40_000);
+        assertOpenForMs(60_000);
+
+        // 连续失败次数很大时也不会移位溢出
+        for (int i = 0; i < 100; i++) {
+            breaker.onFailure(40_000);
+        }
+        assertOpenForMs(60_000);
+    }
+
+    /**
+     * 断言熔断恰好持续 backoffMs：到期前拒绝，到期时放行一次试探
+     */
+    private void assertOpenForMs(long backoffMs) {
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        advanceMs(backoffMs - 1);
+        assertFalse(breaker.allowRequest());
+        advanceMs(1);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    private void advanceMs(long ms) {
+        now += TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}
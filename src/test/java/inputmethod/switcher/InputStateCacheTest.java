@@ -0,0 +1,59 @@
+package inputmethod.switcher;
+
+import enums.InputState;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link InputStateCache} 的查询写回：查询期间缓存被失效或更新时丢弃过时的结果
+ */
+public class InputStateCacheTest {
+
+    @Before
+    public void setUp() {
+        InputStateCache.invalidate("测试");
+    }
+
+    @Test
+    public void loadFillsInvalidCache() {
+        assertEquals(InputState.CHINESE, InputStateCache.getOrLoad(() -> InputState.CHINESE));
+        assertEquals(InputState.CHINESE, InputStateCache.peek());
+    }
+
+    @Test
+    public void validCacheSkipsLoader() {
+        InputStateCache.update(InputState.ENGLISH);
+        assertEquals(InputState.ENGLISH, InputStateCache.getOrLoad(() -> {
+            throw new AssertionError("loader called");
+        }));
+    }
+
+    @Test
+    public void noneIsNotCached() {
+        assertEquals(InputState.NONE, InputStateCache.getOrLoad(() -> InputState.NONE));
+        assertNull(InputStateCache.peek());
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidateIsDropped() {
+        // 查询进行中用户手动切换了输入法
+        InputState loaded = InputStateCache.getOrLoad(() -> {
+            InputStateCache.invalidate("手动切换");
+            return InputState.CHINESE;
+        });
+        assertEquals(InputState.CHINESE, loaded);
+        assertNull(InputStateCache.peek());
+    }
+
+    @Test
+    public void loadStartedBeforeUpdateDoesNotOverwriteIt() {
+        InputStateCache.getOrLoad(() -> {
+            InputStateCache.update(InputState.ENGLISH);
+            return InputState.CHINESE;
+        });
+        assertEquals(InputState.ENGLISH, InputStateCache.peek());
+    }
+}
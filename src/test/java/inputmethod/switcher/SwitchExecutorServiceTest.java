@@ -0,0 +1,102 @@
+package inputmethod.switcher;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import enums.InputState;
+import inputmethod.switcher.impl.tray.TrayEventSource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 托盘事件：用替身事件源驱动 {@link SwitchExecutorService#watchTray}，确认缓存失效并在切换线程上重建托盘缓存
+ */
+public class SwitchExecutorServiceTest extends BasePlatformTestCase {
+    private static final long WAIT_SECONDS = 5;
+
+    private RecordingStrategy strategy;
+    private SwitchExecutorService service;
+    private FakeTrayEventSource source;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        strategy = new RecordingStrategy();
+        service = new SwitchExecutorService(() -> strategy, 0);
+        Disposer.register(getTestRootDisposable(), service);
+        source = new FakeTrayEventSource();
+        service.watchTray(source);
+    }
+
+    public void testTaskbarCreatedInvalidatesCacheAndRebuildsOnWorker() throws InterruptedException {
+        InputStateCache.update(InputState.CHINESE);
+
+        source.listener.onTaskbarCreated();
+
+        assertNull(InputStateCache.peek());
+        assertTrue("onTrayChanged not called", strategy.trayChanged.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("onTrayChanged ran on " + strategy.trayChangedThread, strategy.trayChangedOnWorker);
+    }
+
+    public void testDisplayChangedInvalidatesCacheAndRebuildsOnWorker() throws InterruptedException {
+        InputStateCache.update(InputState.ENGLISH);
+
+        source.listener.onDisplayChanged();
+
+        assertNull(InputStateCache.peek());
+        assertTrue("onTrayChanged not called", strategy.trayChanged.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("onTrayChanged ran on " + strategy.trayChangedThread, strategy.trayChangedOnWorker);
+    }
+
+    public void testWatchTrayClosesPreviousSource() {
+        FakeTrayEventSource next = new FakeTrayEventSource();
+        service.watchTray(next);
+
+        assertTrue(source.closed);
+        assertFalse(next.closed);
+    }
+
+    public void testDisposeClosesSource() {
+        Disposer.dispose(service);
+
+        assertTrue(source.closed);
+    }
+
+    private static class FakeTrayEventSource implements TrayEventSource {
+        volatile Listener listener;
+        volatile boolean closed;
+
+        @Override
+        public void start(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class RecordingStrategy implements InputMethodSwitchStrategy {
+        final CountDownLatch trayChanged = new CountDownLatch(1);
+        volatile boolean trayChangedOnWorker;
+        volatile String trayChangedThread;
+
+        @Override
+        public boolean change() {
+            return true;
+        }
+
+        @Override
+        public InputState getCurrentMode() {
+            return InputState.ENGLISH;
+        }
+
+        @Override
+        public void onTrayChanged() {
+            trayChangedThread = Thread.currentThread().getName();
+            trayChangedOnWorker = SwitchExecutorService.isWorkerThread();
+            trayChanged.countDown();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package inputmethod.switcher.impl;
+
+import enums.InputState;
+import inputmethod.switcher.InputStateCache;
+import inputmethod.switcher.impl.ime.ImeWindowApi;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用替身 IME 窗口驱动 {@link ImeControlSwitcher} 的设置与回读校验逻辑
+ */
+public class ImeControlSwitcherTest {
+    private FakeImeWindowApi api;
+    private ImeControlSwitcher switcher;
+
+    @Before
+    public void setUp() {
+        api = new FakeImeWindowApi();
+        switcher = new ImeControlSwitcher(api);
+        InputStateCache.update(InputState.ENGLISH);
+    }
+
+    @Test
+    public void readsOpenStatusBeforeConversionMode() {
+        api.open = false;
+        api.conversionMode = ImeWindowApi.IME_CMODE_NATIVE;
+        assertEquals(InputState.ENGLISH, switcher.getCurrentMode());
+
+        api.open = true;
+        assertEquals(InputState.CHINESE, switcher.getCurrentMode());
+
+        api.conversionMode = 0;
+        assertEquals(InputState.ENGLISH, switcher.getCurrentMode());
+    }
+
+    @Test
+    public void missingImeWindowReadsAsEnglish() {
+        api.window = 0;
+        assertEquals(InputState.ENGLISH, switcher.getCurrentMode());
+        assertTrue(api.commands.isEmpty());
+    }
+
+    @Test
+    public void switchToChineseOpensImeAndSetsNativeBit() {
+        api.open = false;
+        // 其他转换位（全角等）保持不变
+        api.conversionMode = 0x0008;
+
+        assertTrue(switcher.switchTo(InputState.CHINESE));
+
+        assertTrue(api.open);
+        assertEquals(0x0008 | ImeWindowApi.IME_CMODE_NATIVE, api.conversionMode);
+        assertEquals(InputState.ENGLISH, InputStateCache.peek());
+    }
+
+    @Test
+    public void switchToEnglishClearsOnlyNativeBit() {
+        api.conversionMode = 0x0008 | ImeWindowApi.IME_CMODE_NATIVE;
+
+        assertTrue(switcher.switchTo(InputState.ENGLISH));
+
+        assertTrue(api.open);
+        assertEquals(0x0008, api.conversionMode);
+        assertFalse(api.commands.contains(ImeWindowApi.IMC_SETOPENSTATUS));
+    }
+
+    @Test
+    public void switchToCurrentStateSendsNoSetCommand() {
+        api.conversionMode = ImeWindowApi.IME_CMODE_NATIVE;
+
+        assertTrue(switcher.switchTo(InputState.CHINESE));
+
+        assertFalse(api.commands.contains(ImeWindowApi.IMC_SETOPENSTATUS));
+        assertFalse(api.commands.contains(ImeWindowApi.IMC_SETCONVERSIONMODE));
+    }
+
+    @Test
+    public void ignoredControlMessageInvalidatesCache() {
+        api.ignoreSets = true;
+
+        assertFalse(switcher.switchTo(InputState.CHINESE));
+
+        assertEquals(0, api.conversionMode);
+        assertNull(InputStateCache.peek());
+    }
+
+    @Test
+    public void missingImeWindowInvalidatesCache() {
+        api.window = 0;
+
+        assertFalse(switcher.switchTo(InputState.CHINESE));
+
+        assertTrue(api.commands.isEmpty());
+        assertNull(InputStateCache.peek());
+    }
+
+    @Test
+    public void noneTargetIsIgnored() {
+        assertFalse(switcher.switchTo(InputState.NONE));
+
+        assertTrue(api.commands.isEmpty());
+        assertEquals(InputState.ENGLISH, InputStateCache.peek());
+    }
+
+    @Test
+    public void changeFlipsCurrentMode() {
+        assertTrue(switcher.change());
+        assertEquals(InputState.CHINESE, switcher.getCurrentMode());
+
+        assertTrue(switcher.change());
+        assertEquals(InputState.ENGLISH, switcher.getCurrentMode());
+    }
+
+    /**
+     * 按 WM_IME_CONTROL 子命令维护打开状态和转换模式
+     */
+    private static class FakeImeWindowApi implements ImeWindowApi {
+        long window = 0x1234;
+        boolean open = true;
+        long conversionMode;
+        // 模拟忽略设置消息的输入法
+        boolean ignoreSets;
+        final List<Integer> commands = new ArrayList<>();
+
+        @Override
+        public long defaultImeWindow() {
+            return window;
+        }
+
+        @Override
+        public long sendImeControl(long imeWindow, int command, long value) {
+            assertEquals(window, imeWindow);
+            commands.add(command);
+            switch (command) {
+                case IMC_GETOPENSTATUS:
+                    return open ? 1 : 0;
+                case IMC_SETOPENSTATUS:
+                    if (!ignoreSets) {
+                        open = value != 0;
+                    }
+                    return 0;
+                case IMC_GETCONVERSIONMODE:
+                    return conversionMode;
+                case IMC_SETCONVERSIONMODE:
+                    if (!ignoreSets) {
+                        conversionMode = value;
+                    }
+                    return 0;
+                default:
+                    throw new AssertionError("unexpected command " + command);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package inputmethod.switcher.impl.auto;
+
+import inputmethod.switcher.impl.auto.EngineStats.Summary;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EngineStats} 的统计、排名以及排名记录的保存格式
+ */
+public class EngineStatsTest {
+
+    @Test
+    public void summaryUsesSuccessfulLatenciesOnly() {
+        EngineStats stats = new EngineStats();
+        stats.record(2_000_000, true);
+        stats.record(50_000_000, false);
+        stats.record(4_000_000, true);
+
+        Summary summary = stats.summary();
+
+        assertEquals(2.0 / 3, summary.successRate(), 1e-9);
+        assertEquals(2.0, summary.p50Ms(), 1e-9);
+        assertEquals(4.0, summary.p99Ms(), 1e-9);
+    }
+
+    @Test
+    public void priorIsUsedUntilEnoughSamples() {
+        EngineStats stats = new EngineStats();
+        Summary prior = new Summary(1, 3, 7);
+        stats.setPrior(prior);
+        stats.record(1_000_000, true);
+
+        assertEquals(prior, stats.summary());
+    }
+
+    @Test
+    public void allFailuresFormatAsInfinityAndParseBack() {
+        EngineStats stats = new EngineStats();
+        stats.record(1_000_000, false);
+        stats.record(1_000_000, false);
+
+        String text = stats.summary().format();
+
+        assertEquals("0.00/inf/inf", text);
+        assertEquals(new Summary(0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY), Summary.parse(text));
+    }
+
+    @Test
+    public void unknownRoundTrips() {
+        assertEquals("0.50/inf/inf", Summary.UNKNOWN.format());
+        assertEquals(Summary.UNKNOWN, Summary.parse(Summary.UNKNOWN.format()));
+    }
+
+    @Test
+    public void finiteSummaryRoundTrips() {
+        Summary summary = new Summary(0.75, 1.5, 12.25);
+
+        assertEquals(summary, Summary.parse(summary.format()));
+    }
+
+    @Test
+    public void malformedTextParsesAsUnknown() {
+        assertEquals(Summary.UNKNOWN, Summary.parse("0.5/1.0"));
+        assertEquals(Summary.UNKNOWN, Summary.parse("x/1.0/2.0"));
+    }
+
+    @Test
+    public void rankingPutsUnknownAndFailingEnginesLast() {
+        Summary fast = new Summary(1, 1, 2);
+        Summary slow = new Summary(1, 5, 9);
+        Summary failing = new Summary(0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        List<Summary> summaries = new ArrayList<>(List.of(failing, Summary.UNKNOWN, slow, fast));
+
+        summaries.sort(EngineStats.RANKING);
+
+        assertEquals(List.of(fast, slow, Summary.UNKNOWN, failing), summaries);
+        assertTrue(EngineStats.RANKING.compare(Summary.UNKNOWN, failing) < 0);
+    }
+}
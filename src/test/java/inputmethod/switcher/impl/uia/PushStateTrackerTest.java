@@ -0,0 +1,166 @@
+package inputmethod.switcher.impl.uia;
+
+import enums.InputState;
+import mmarquee.automation.Element;
+import mmarquee.uiautomation.IUIAutomationElement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用替身订阅层驱动 {@link PushStateTracker} 的订阅与恢复逻辑
+ */
+public class PushStateTrackerTest {
+    private FakeBinding binding;
+    private PushStateTracker tracker;
+    private Element button;
+
+    @Before
+    public void setUp() {
+        binding = new FakeBinding();
+        tracker = new PushStateTracker(binding, PushStateTrackerTest::classify);
+        button = new Element((IUIAutomationElement) null);
+    }
+
+    @Test
+    public void readsPushedStateWithoutResubscribing() {
+        binding.name = "中文模式";
+        assertEquals(InputState.CHINESE, tracker.current(button));
+
+        binding.last().fire("英语模式");
+        assertEquals(InputState.ENGLISH, tracker.current(button));
+        assertEquals(1, binding.subscriptions.size());
+    }
+
+    @Test
+    public void unrecognizedNameResubscribesOnNextRead() {
+        binding.name = "中文模式";
+        tracker.current(button);
+        FakeSubscription first = binding.last();
+
+        first.fire("托盘");
+        binding.name = "英语模式";
+        assertEquals(InputState.ENGLISH, tracker.current(button));
+        assertTrue(first.closed);
+        assertEquals(2, binding.subscriptions.size());
+    }
+
+    @Test
+    public void unrecognizedInitialNameStaysStale() {
+        binding.name = "托盘";
+        assertEquals(InputState.NONE, tracker.current(button));
+
+        binding.name = "中文模式";
+        assertEquals(InputState.CHINESE, tracker.current(button));
+        assertEquals(2, binding.subscriptions.size());
+    }
+
+    @Test
+    public void replacedElementMovesSubscription() {
+        binding.name = "中文模式";
+        tracker.current(button);
+        FakeSubscription first = binding.last();
+
+        Element replaced = new Element((IUIAutomationElement) null);
+        binding.name = "英语模式";
+        assertEquals(InputState.ENGLISH, tracker.current(replaced));
+        assertTrue(first.closed);
+        assertSame(replaced, binding.last().element);
+        assertFalse(binding.last().closed);
+    }
+
+    @Test
+    public void markStaleClosesAndRebuilds() {
+        binding.name = "中文模式";
+        tracker.current(button);
+        FakeSubscription first = binding.last();
+
+        tracker.markStale();
+        assertTrue(first.closed);
+
+        // 旧订阅上迟到的事件不能影响重建后的状态
+        binding.name = "英语模式";
+        assertEquals(InputState.ENGLISH, tracker.current(button));
+        first.fire("中文模式");
+        assertEquals(2, binding.subscriptions.size());
+        assertEquals(InputState.ENGLISH, tracker.current(button));
+    }
+
+    @Test
+    public void closeFailureDoesNotBlockResubscribe() {
+        binding.name = "中文模式";
+        tracker.current(button);
+        binding.last().failOnClose = true;
+
+        tracker.markStale();
+        assertEquals(InputState.CHINESE, tracker.current(button));
+        assertEquals(2, binding.subscriptions.size());
+    }
+
+    private static InputState classify(String name) {
+        if (name == null) {
+            return InputState.NONE;
+        }
+        if (name.contains("中文")) {
+            return InputState.CHINESE;
+        }
+        if (name.contains("英语")) {
+            return InputState.ENGLISH;
+        }
+        return InputState.NONE;
+    }
+
+    private static class FakeBinding implements NameChangeBinding {
+        private final List<FakeSubscription> subscriptions = new ArrayList<>();
+        private String name;
+
+        @Override
+        public Subscription subscribe(Element element, Consumer<String> onNameChanged) {
+            FakeSubscription subscription = new FakeSubscription(element, onNameChanged);
+            subscriptions.add(subscription);
+            return subscription;
+        }
+
+        @Override
+        public String currentName(Element element) {
+            return name;
+        }
+
+        FakeSubscription last() {
+            return subscriptions.get(subscriptions.size() - 1);
+        }
+    }
+
+    private static class FakeSubscription implements NameChangeBinding.Subscription {
+        private final Element element;
+        private final Consumer<String> onNameChanged;
+        private boolean closed;
+        private boolean failOnClose;
+
+        FakeSubscription(Element element, Consumer<String> onNameChanged) {
+            this.element = element;
+            this.onNameChanged = onNameChanged;
+        }
+
+        // 关闭后仍然可以回调：UIAutomation 的事件可能在移除订阅时已经在途
+        void fire(String name) {
+            onNameChanged.accept(name);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (failOnClose) {
+                throw new IllegalStateException("element gone");
+            }
+        }
+    }
+}